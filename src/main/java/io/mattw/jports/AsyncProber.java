@@ -0,0 +1,24 @@
+package io.mattw.jports;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Prober} that completes checks without blocking the consumer threads, so a few threads can keep
+ * many probes in flight. {@link IPv4BlockPortScan} limits the probes in flight to its thread count.
+ */
+@FunctionalInterface
+public interface AsyncProber extends Prober {
+
+    /**
+     * @param addressPort target to check
+     * @param timeout     millis to wait for an answer
+     * @return completes with the outcome of the check, a failed future counts as {@link PortStatus#FILTERED}
+     */
+    CompletableFuture<PortStatus> probeAsync(IPv4AddressPort addressPort, int timeout);
+
+    @Override
+    default PortStatus probe(final IPv4AddressPort addressPort, final int timeout) {
+        return probeAsync(addressPort, timeout).join();
+    }
+
+}
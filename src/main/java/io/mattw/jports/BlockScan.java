@@ -3,6 +3,14 @@ package io.mattw.jports;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public abstract class BlockScan<T extends BlockScan> {
@@ -17,17 +25,38 @@ public abstract class BlockScan<T extends BlockScan> {
      */
     public static final long MAX_QUEUE_SIZE_MULTIPLIER = 16;
 
+    /**
+     * Wait when there is nothing to do and no {@link #loopDelay}.
+     */
+    private static final long IDLE_NANOS = 50_000;
+
     ScanMethod scanMethod;
     IPv4Address startAddress;
     Collection<IPv4Address> addresses;
+    Iterator<IPv4Address> addressStream;
     IPv4AddressBlock addressBlock;
     int threadCount = 1;
+    long loopDelay = 2;
+    volatile RateLimiter rateLimiter;
 
     ExecutorGroup producer = new ExecutorGroup(1);
     ExecutorGroup consumers;
     boolean shutdown = false;
 
-    Map<String, Instant> threadTimes = new HashMap<>();
+    /**
+     * Set when submitted to a {@link ScanRuntime}, whose workers consume instead of {@link #consumers}.
+     */
+    CountDownLatch runtimeDone;
+
+    /**
+     * Items taken by consumers, striped per thread so counting stays cheap.
+     */
+    final LongAdder completedItems = new LongAdder();
+    private Consumer<ScanProgress> progressListener;
+    private long progressInterval;
+    private ScheduledExecutorService progressReporter;
+
+    Map<String, Instant> threadTimes = new ConcurrentHashMap<>();
     Duration quickest;
     Duration longest;
 
@@ -80,6 +109,20 @@ public abstract class BlockScan<T extends BlockScan> {
         this.scanMethod = ScanMethod.MULTI_ADDRESS;
     }
 
+    /**
+     * Scan addresses as they are read from an iterator, such as a {@link TargetReader}, without holding them all in memory.
+     */
+    public BlockScan(final Iterator<IPv4Address> addressStream) {
+        this.addressStream = addressStream;
+
+        this.scanMethod = ScanMethod.STREAM_ADDRESS;
+    }
+
+    /**
+     * For scans with their own targets, such as {@link IPv6PortScan}.
+     */
+    BlockScan() {}
+
     /**
      * Signals a shutdown of the producing and consuming threads to end the process early.
      */
@@ -102,11 +145,114 @@ public abstract class BlockScan<T extends BlockScan> {
     }
 
     /**
-     * Offer that waits for the queue to open up before adding items back to it.
+     * Pause after each item in the producer and consumer loops, which keeps a JavaFX UI responsive
+     * while scanning on other threads. The default is the fixed pause scans have always had, capping a scan at
+     * about 500 items per second per loop. Set 0 to run at full speed, as the command line runner does.
+     *
+     * @param loopDelay millis, default 2
+     */
+    public T setLoopDelay(final long loopDelay) {
+        this.loopDelay = Math.max(0, loopDelay);
+        return getThis();
+    }
+
+    /**
+     * Limits how many items are processed per second across all threads. Port scans only count
+     * probes that go to the network.
+     */
+    public T setRateLimit(final double itemsPerSecond) {
+        this.rateLimiter = new RateLimiter(itemsPerSecond);
+        return getThis();
+    }
+
+    /**
+     * Waits for the {@link #rateLimiter} when one is set.
+     */
+    void acquireRate() {
+        final RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.acquire();
+        }
+    }
+
+    /**
+     * Periodic progress snapshots delivered from a single thread, replacing a callback per item.
+     * A final snapshot is sent once all consumers are done, even if the listener threw on earlier ones.
+     *
+     * @param progressListener receives each snapshot
+     * @param intervalMillis   time between snapshots
+     */
+    public T setProgressListener(final Consumer<ScanProgress> progressListener, final long intervalMillis) {
+        this.progressListener = progressListener;
+        this.progressInterval = intervalMillis;
+        return getThis();
+    }
+
+    /**
+     * Starts the progress reporter if a listener was set. Called from {@link #execute()}.
+     */
+    void startProgressReporter() {
+        if (progressListener == null) {
+            return;
+        }
+
+        final long total = getTotalItems();
+        final Instant start = Instant.now();
+        final long[] previous = {0, System.nanoTime()};
+
+        progressReporter = Executors.newSingleThreadScheduledExecutor();
+        progressReporter.scheduleAtFixedRate(() -> {
+            final boolean finished = isConsumingFinished();
+            final long completed = completedItems.sum();
+            final long now = System.nanoTime();
+            final double rate = (completed - previous[0]) * 1e9 / Math.max(1, now - previous[1]);
+            previous[0] = completed;
+            previous[1] = now;
+
+            try {
+                progressListener.accept(new ScanProgress(completed, total, rate, Duration.between(start, Instant.now()), finished));
+            } catch (RuntimeException e) {
+                // Reported like an uncaught exception, but later snapshots are still sent and await() still returns.
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+
+            if (finished) {
+                progressReporter.shutdown();
+            }
+        }, progressInterval, progressInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of addresses the scan will produce, -1 for endless and streamed scans
+     */
+    long getTotalItems() {
+        switch (scanMethod) {
+            case SINGLE_ADDRESS:
+                return 1;
+            case RANGE_ADDRESS:
+                return addressBlock.getSize();
+            case MULTI_ADDRESS:
+                return addresses.size();
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Offer that waits for the queue to open up before adding items back to it. Gives up on shutdown, as
+     * consumers no longer take items then.
      */
     <K> void waitAndOfferToQueue(final Queue<K> queue, final K object) {
         while (queue.size() >= getMaxQueueSize()) {
-            sleep(100);
+            if (shutdown) {
+                return;
+            }
+            if (loopDelay > 0) {
+                sleep(100);
+            } else {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
         }
 
         queue.offer(object);
@@ -117,10 +263,54 @@ public abstract class BlockScan<T extends BlockScan> {
      */
     public abstract T execute();
 
+    /**
+     * Validates the configuration before producing starts, from {@link #execute()} or {@link ScanRuntime#submit}.
+     */
+    abstract void prepare();
+
     abstract void producer();
 
     abstract void consumer();
 
+    /**
+     * Takes and processes a single item from the queue.
+     *
+     * @param threadId identifies the calling thread for {@link #updateThreadTime(String)}
+     * @return false if the queue was empty or the item was put back for later
+     */
+    abstract boolean consumeNext(String threadId);
+
+    /**
+     * Called once after the last item has been consumed.
+     */
+    void finished() {}
+
+    /**
+     * Waits for results handed off by consumers to be handled, after consuming has finished.
+     */
+    void awaitResults() throws InterruptedException {}
+
+    /**
+     * @return whether items not in the queue, such as scheduled retries, may still be added to it
+     */
+    boolean hasPendingWork() {
+        return false;
+    }
+
+    /**
+     * @return whether this scan can be submitted to a {@link ScanRuntime}
+     */
+    boolean supportsRuntime() {
+        return true;
+    }
+
+    boolean isConsumingFinished() {
+        if (runtimeDone != null) {
+            return runtimeDone.getCount() == 0;
+        }
+        return !producer.isStillWorking() && consumers != null && !consumers.isStillWorking();
+    }
+
     abstract long getQueueSize();
 
     public long getMaxQueueSize() {
@@ -173,6 +363,10 @@ public abstract class BlockScan<T extends BlockScan> {
         return Duration.ofNanos(sum / values.size());
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     public Duration getQuickest() {
         return quickest;
     }
@@ -186,7 +380,15 @@ public abstract class BlockScan<T extends BlockScan> {
      */
     public T await() throws InterruptedException {
         producer.await();
-        consumers.await();
+        if (runtimeDone != null) {
+            runtimeDone.await();
+        } else {
+            consumers.await();
+        }
+        awaitResults();
+        if (progressReporter != null) {
+            progressReporter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
         return getThis();
     }
 
@@ -197,6 +399,19 @@ public abstract class BlockScan<T extends BlockScan> {
         return (T) execute().await();
     }
 
+    /**
+     * Pause in producer and consumer loops between items.
+     *
+     * @param idle whether the loop found nothing to do, which waits briefly even without a {@link #loopDelay}
+     */
+    void pause(final boolean idle) {
+        if (loopDelay > 0) {
+            sleep(loopDelay);
+        } else if (idle) {
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
     void sleep(final long millis) {
         try {
             Thread.sleep(millis);
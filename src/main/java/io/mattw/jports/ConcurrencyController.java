@@ -0,0 +1,152 @@
+package io.mattw.jports;
+
+/**
+ * Adjusts how many probes may be in flight at once while a scan runs, using additive increase
+ * and multiplicative decrease (AIMD).
+ * <p>
+ * At the end of every interval the window grows by {@link #increment} as long as throughput did not drop and
+ * the share of timed out probes stayed near its running baseline. When timeouts spike, the window is
+ * multiplied by {@link #decrease}. The window always stays within the given bounds.
+ */
+public class ConcurrencyController {
+
+    private final int minWindow;
+    private final int maxWindow;
+    private long intervalMillis = 200;
+    private int increment = 8;
+    private double decrease = 0.5;
+    /**
+     * Timeout rate above the baseline, as a fraction of completed probes, that counts as a spike.
+     */
+    private double tolerance = 0.02;
+
+    private int window;
+    private int inFlight;
+
+    private long intervalStart = System.currentTimeMillis();
+    private long completed;
+    private long timeouts;
+    private double lastThroughput;
+    private double baselineTimeoutRate = -1;
+
+    /**
+     * @param minWindow lowest number of probes in flight, also the starting window
+     * @param maxWindow highest number of probes in flight
+     */
+    public ConcurrencyController(final int minWindow, final int maxWindow) {
+        if (minWindow < 1 || maxWindow < minWindow) {
+            throw new IllegalArgumentException("Window bounds must satisfy 1 <= min <= max.");
+        }
+
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.window = minWindow;
+    }
+
+    public ConcurrencyController setIntervalMillis(final long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * @param increment probes added to the window after a healthy interval, default 8
+     */
+    public ConcurrencyController setIncrement(final int increment) {
+        this.increment = Math.max(1, increment);
+        return this;
+    }
+
+    /**
+     * @param decrease factor applied to the window when timeouts spike, default 0.5
+     */
+    public ConcurrencyController setDecrease(final double decrease) {
+        this.decrease = Math.min(1, Math.max(0, decrease));
+        return this;
+    }
+
+    /**
+     * @param tolerance allowed rise of the timeout rate over its baseline, default 0.02
+     */
+    public ConcurrencyController setTolerance(final double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Waits until the number of probes in flight is below the window.
+     *
+     * @return false when interrupted while waiting, with the interrupt flag set again and nothing to {@link #release(boolean)}
+     */
+    public synchronized boolean acquire() {
+        while (inFlight >= window) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Marks a probe as complete and adjusts the window when an interval has passed.
+     *
+     * @param timedOut probe got no answer, or failed locally
+     */
+    public synchronized void release(final boolean timedOut) {
+        inFlight--;
+        completed++;
+        if (timedOut) {
+            timeouts++;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now - intervalStart >= intervalMillis) {
+            adjust(now);
+        }
+
+        notifyAll();
+    }
+
+    private void adjust(final long now) {
+        final double throughput = completed * 1000.0 / Math.max(1, now - intervalStart);
+        final double timeoutRate = (double) timeouts / Math.max(1, completed);
+
+        if (baselineTimeoutRate < 0) {
+            baselineTimeoutRate = timeoutRate;
+        }
+
+        if (timeoutRate > baselineTimeoutRate + tolerance) {
+            window = Math.max(minWindow, (int) (window * decrease));
+        } else {
+            if (throughput >= lastThroughput * 0.95) {
+                window = Math.min(maxWindow, window + increment);
+            }
+            baselineTimeoutRate = baselineTimeoutRate * 0.8 + timeoutRate * 0.2;
+        }
+
+        lastThroughput = throughput;
+        intervalStart = now;
+        completed = 0;
+        timeouts = 0;
+    }
+
+    public synchronized int getWindow() {
+        return window;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMinWindow() {
+        return minWindow;
+    }
+
+    public int getMaxWindow() {
+        return maxWindow;
+    }
+
+}
@@ -1,11 +1,14 @@
 package io.mattw.jports;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Structure to make managing a group of threads running the same task in an ExecutorService easier.
@@ -15,8 +18,9 @@ import java.util.concurrent.TimeUnit;
 public class ExecutorGroup {
 
     private final ExecutorService service;
-    private final List<Future<?>> futures = new ArrayList<>();
+    private final List<Future<?>> futures = new CopyOnWriteArrayList<>();
     private final int threadCount;
+    private final boolean shared;
 
     /**
      * Default constructor
@@ -27,6 +31,20 @@ public class ExecutorGroup {
         this.threadCount = threadCount;
 
         service = Executors.newFixedThreadPool(threadCount);
+        shared = false;
+    }
+
+    /**
+     * Runs on an existing service that outlives the group, such as the producer pool of a {@link ScanRuntime}.
+     * The service is never shut down by the group.
+     *
+     * @param service     shared service
+     * @param threadCount number of times to submit the runnable
+     */
+    public ExecutorGroup(final ExecutorService service, final int threadCount) {
+        this.threadCount = threadCount;
+        this.service = service;
+        this.shared = true;
     }
 
     /**
@@ -39,14 +57,56 @@ public class ExecutorGroup {
             futures.add(service.submit(runnable));
         }
 
-        service.shutdown();
+        if (!shared) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * Submits one more runnable to a group on a shared service, such as a replacement for an abandoned thread.
+     */
+    public Future<?> submit(final Runnable runnable) {
+        if (!shared) {
+            throw new IllegalStateException("Only a group on a shared service can grow.");
+        }
+
+        final Future<?> future = service.submit(runnable);
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * Stops waiting for a thread that may never return, such as one stuck in a probe.
+     */
+    public void abandon(final Future<?> future) {
+        futures.remove(future);
     }
 
     /**
      * Waits for all threads to complete.
      */
     public void await() throws InterruptedException {
-        service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if (!shared) {
+            service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        // Threads can be added or abandoned while waiting, so wait on each in short steps until none are left.
+        Future<?> pending;
+        while ((pending = nextPending()) != null) {
+            try {
+                pending.get(100, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | CancellationException | TimeoutException ignored) {}
+        }
+    }
+
+    private Future<?> nextPending() {
+        for (Future<?> future : futures) {
+            if (!future.isDone()) {
+                return future;
+            }
+        }
+        return null;
     }
 
     /**
@@ -0,0 +1,75 @@
+package io.mattw.jports;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe cache bounded by entry count, least recently used first out, and by age.
+ * Null values are kept, so absent results do not have to be looked up again.
+ */
+class ExpiringCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * @param maxEntries entries kept, 0 keeps nothing
+     * @param ttlMillis  age after which an entry is dropped
+     */
+    ExpiringCache(final int maxEntries, final long ttlMillis) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, ExpiringCache.Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the entry, whose value may be null, or null when not cached or expired
+     */
+    synchronized Entry<V> get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.expiry) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(final K key, final V value) {
+        if (maxEntries > 0) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    static class Entry<V> {
+
+        private final V value;
+        private final long expiry;
+
+        Entry(final V value, final long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+
+        V getValue() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package io.mattw.jports;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for large numbers of short delays, such as probe retries.
+ * <p>
+ * Items are hashed into a ring of buckets by the tick they expire on, so scheduling is constant time and
+ * a single daemon thread, started on first use, wakes once per tick to hand expired items to the callback.
+ * Delays are rounded up to whole ticks and items may expire up to a tick late.
+ */
+class HashedTimerWheel<T> {
+
+    private final long tickNanos;
+    private final List<ArrayDeque<Entry<T>>> buckets;
+    private final int mask;
+    private final Consumer<T> expired;
+
+    private long start;
+    private long tick = 0;
+    private int size = 0;
+    private Thread thread;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param tickMillis resolution of delays
+     * @param wheelSize  buckets in the ring, rounded up to a power of two
+     * @param expired    receives items as their delay passes, on the wheel's thread
+     */
+    HashedTimerWheel(final long tickMillis, final int wheelSize, final Consumer<T> expired) {
+        final int capacity = Integer.highestOneBit(Math.max(2, wheelSize * 2 - 1));
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.buckets = new ArrayList<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.mask = capacity - 1;
+        this.expired = expired;
+    }
+
+    /**
+     * @param item        handed to the callback once the delay has passed
+     * @param delayMillis time to wait, at least one tick
+     */
+    synchronized void schedule(final T item, final long delayMillis) {
+        if (stopped) {
+            throw new IllegalStateException("Timer wheel has been stopped.");
+        }
+        if (thread == null) {
+            start = System.nanoTime();
+            thread = new Thread(this::run, "jports-timer-wheel");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // Bucket of the first tick whose end, when it is processed, is at least the delay from now.
+        final long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        final long due = Math.max(tick, (System.nanoTime() - start + Math.max(tickNanos, delayNanos) + tickNanos - 1) / tickNanos - 1);
+        buckets.get((int) (due & mask)).add(new Entry<>(item, (due - tick) / buckets.size()));
+        size++;
+    }
+
+    /**
+     * @return items waiting to expire
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Stops the thread, items still waiting never expire.
+     */
+    void stop() {
+        stopped = true;
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        final List<T> due = new ArrayList<>();
+        while (!stopped) {
+            final long wait;
+            synchronized (this) {
+                wait = start + (tick + 1) * tickNanos - System.nanoTime();
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+
+            advance(due);
+            // Hand over outside the lock, the callback may schedule again.
+            for (T item : due) {
+                expired.accept(item);
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Processes the current bucket and moves on to the next tick.
+     */
+    private synchronized void advance(final List<T> due) {
+        for (Iterator<Entry<T>> iterator = buckets.get((int) (tick & mask)).iterator(); iterator.hasNext(); ) {
+            final Entry<T> entry = iterator.next();
+            if (entry.rounds == 0) {
+                iterator.remove();
+                due.add(entry.item);
+                size--;
+            } else {
+                entry.rounds--;
+            }
+        }
+        tick++;
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        private long rounds;
+
+        Entry(final T item, final long rounds) {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+
+}
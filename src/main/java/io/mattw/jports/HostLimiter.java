@@ -0,0 +1,58 @@
+package io.mattw.jports;
+
+/**
+ * Counts probes in flight per destination host so no single host gets more than a set number at once.
+ * <p>
+ * Counts are kept in a {@link PackedLongMap} keyed by address decimal, and hosts are forgotten as soon as
+ * their last probe completes, so memory follows the number of hosts currently being probed.
+ */
+class HostLimiter {
+
+    private final int limit;
+    private final PackedLongMap inFlight = new PackedLongMap();
+
+    /**
+     * @param limit most probes in flight to one host
+     */
+    HostLimiter(final int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * @return whether the host was below its limit and a probe may start, to be followed by {@link #release(long)}
+     */
+    synchronized boolean tryAcquire(final long decimal) {
+        final long count = inFlight.get(decimal);
+        if (count == PackedLongMap.EMPTY) {
+            inFlight.put(decimal, 1);
+            return true;
+        }
+        if (count >= limit) {
+            return false;
+        }
+        inFlight.put(decimal, count + 1);
+        return true;
+    }
+
+    synchronized void release(final long decimal) {
+        final long count = inFlight.get(decimal);
+        if (count <= 1) {
+            inFlight.remove(decimal);
+        } else {
+            inFlight.put(decimal, count - 1);
+        }
+    }
+
+    /**
+     * @return probes in flight to the host
+     */
+    synchronized int getInFlight(final long decimal) {
+        final long count = inFlight.get(decimal);
+        return count == PackedLongMap.EMPTY ? 0 : (int) count;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+}
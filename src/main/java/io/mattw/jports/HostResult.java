@@ -0,0 +1,73 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of every port checked on one address, sent once all of its ports are done.
+ *
+ * @see IPv4BlockPortScan#setHostResultMethod(java.util.function.Consumer)
+ */
+public class HostResult implements Serializable {
+
+    private IPv4Address address;
+    private Map<Integer, PortStatus> statuses;
+    private String hostname;
+    private String tag;
+
+    public HostResult(final IPv4Address address, final Map<Integer, PortStatus> statuses) {
+        this.address = address;
+        this.statuses = Collections.unmodifiableMap(statuses);
+    }
+
+    public IPv4Address getAddress() {
+        return address;
+    }
+
+    /**
+     * @return hostname of the address when looked up with a {@link ReverseDnsResolver}, otherwise null
+     */
+    public String getHostname() {
+        return hostname;
+    }
+
+    void setHostname(final String hostname) {
+        this.hostname = hostname;
+    }
+
+    /**
+     * @return value of the longest prefix containing the address when tagged with an {@link IPv4PrefixTable}, otherwise null
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    void setTag(final String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return status of each port, in the order ports were given to the scan
+     */
+    public Map<Integer, PortStatus> getStatuses() {
+        return statuses;
+    }
+
+    public List<Integer> getOpenPorts() {
+        final List<Integer> open = new ArrayList<>();
+        statuses.forEach((port, status) -> {
+            if (status == PortStatus.OPEN) {
+                open.add(port);
+            }
+        });
+        return open;
+    }
+
+    public boolean hasOpenPorts() {
+        return statuses.containsValue(PortStatus.OPEN);
+    }
+
+}
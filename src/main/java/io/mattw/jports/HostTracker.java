@@ -0,0 +1,91 @@
+package io.mattw.jports;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects outcomes per address until all of its ports are done, for {@link HostResult}s.
+ * <p>
+ * Only hosts with ports still in flight are held, each as one byte per port, and a host is dropped
+ * as soon as its result is built.
+ */
+class HostTracker {
+
+    private static final PortStatus[] STATUSES = PortStatus.values();
+
+    private final int[] ports;
+    private final Map<Integer, Integer> portIndex = new HashMap<>();
+    private final int portCount;
+    private final Map<Long, PendingHost> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param ports ports checked on every address
+     */
+    HostTracker(final Collection<Integer> ports) {
+        for (Integer port : ports) {
+            portIndex.putIfAbsent(port, portIndex.size());
+        }
+        this.ports = new int[portIndex.size()];
+        portIndex.forEach((port, index) -> this.ports[index] = port);
+        this.portCount = ports.size();
+    }
+
+    /**
+     * @return the host's result when this was its last port, otherwise null
+     */
+    HostResult complete(final long decimal, final int port, final PortStatus status) {
+        return record(decimal, portIndex.get(port), status, 1);
+    }
+
+    /**
+     * Counts ports that will not be checked, as the host was found unreachable.
+     *
+     * @return the host's result when these were its last ports, otherwise null
+     */
+    HostResult skip(final long decimal, final int count) {
+        return record(decimal, -1, null, count);
+    }
+
+    private HostResult record(final long decimal, final int index, final PortStatus status, final int count) {
+        final PendingHost host = pending.computeIfAbsent(decimal, key -> new PendingHost(ports.length, portCount));
+        synchronized (host) {
+            if (index >= 0) {
+                host.outcomes[index] = (byte) (status.ordinal() + 1);
+            }
+            host.remaining -= count;
+            if (host.remaining > 0) {
+                return null;
+            }
+        }
+
+        pending.remove(decimal);
+        final Map<Integer, PortStatus> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < ports.length; i++) {
+            // Only ports skipped after the host was found unreachable have no outcome.
+            statuses.put(ports[i], host.outcomes[i] == 0 ? PortStatus.UNREACHABLE : STATUSES[host.outcomes[i] - 1]);
+        }
+        return new HostResult(new IPv4Address(decimal), statuses);
+    }
+
+    /**
+     * @return hosts with ports still in flight
+     */
+    int size() {
+        return pending.size();
+    }
+
+    private static class PendingHost {
+
+        private final byte[] outcomes;
+        private int remaining;
+
+        PendingHost(final int ports, final int remaining) {
+            this.outcomes = new byte[ports];
+            this.remaining = remaining;
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Reads what web server answers on an address:port with a minimal HTTP/1.1 GET /, for
+ * {@link IPv4BlockPortScan#setHttpFingerprinter(HttpFingerprinter, Collection)}.
+ * <p>
+ * Requests run over non-blocking channels so many run on a single thread. Only a bounded prefix of the response
+ * is read, from which the status line, selected headers and page title are taken, so large pages cost no more
+ * than small ones.
+ */
+public class HttpFingerprinter implements AutoCloseable {
+
+    private static final byte[] TITLE_OPEN = "<title".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TITLE_CLOSE = "</title".getBytes(StandardCharsets.US_ASCII);
+
+    private int timeout = 3000;
+    private int maxConcurrent = 256;
+    private int maxBytes = 8192;
+    private String userAgent = "jports";
+    private Set<String> headers = new LinkedHashSet<>(Arrays.asList("server", "content-type", "location"));
+
+    private NioEngine engine;
+
+    /**
+     * @param timeout millis from connecting until the response has to be read, default 3000
+     */
+    public HttpFingerprinter setTimeout(final int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Takes effect before the first request.
+     *
+     * @param maxConcurrent requests running at once, default 256
+     */
+    public HttpFingerprinter setMaxConcurrent(final int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        return this;
+    }
+
+    /**
+     * @param maxBytes most of the response read, headers included, default 8192
+     */
+    public HttpFingerprinter setMaxBytes(final int maxBytes) {
+        this.maxBytes = Math.max(64, maxBytes);
+        return this;
+    }
+
+    /**
+     * @param headers names of the response headers kept, default Server, Content-Type and Location
+     */
+    public HttpFingerprinter setHeaders(final String... headers) {
+        this.headers = new LinkedHashSet<>();
+        for (String header : headers) {
+            this.headers.add(header.toLowerCase());
+        }
+        return this;
+    }
+
+    public HttpFingerprinter setUserAgent(final String userAgent) {
+        this.userAgent = userAgent;
+        return this;
+    }
+
+    /**
+     * @return completes with the response, or null when the address:port did not answer with HTTP
+     */
+    public CompletableFuture<HttpInfo> fingerprint(final IPv4AddressPort addressPort) {
+        final String address = addressPort.getiPv4Address().getAddress();
+        final String host = addressPort.getPort() == 80 ? address : address + ":" + addressPort.getPort();
+        final byte[] request = ("GET / HTTP/1.1\r\n"
+                + "Host: " + host + "\r\n"
+                + "User-Agent: " + userAgent + "\r\n"
+                + "Accept: text/html,*/*\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        final CompletableFuture<HttpInfo> future = new CompletableFuture<>();
+        getEngine().submit(new RequestSession(new InetSocketAddress(address, addressPort.getPort()), timeout,
+                request, maxBytes, headers, future::complete));
+        return future;
+    }
+
+    /**
+     * Stops the request thread, requests still running complete with what they read so far.
+     */
+    @Override
+    public synchronized void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private synchronized NioEngine getEngine() {
+        if (engine == null) {
+            engine = new NioEngine("jports-http", maxConcurrent);
+        }
+        return engine;
+    }
+
+    /**
+     * @param response start of a response
+     * @param length   bytes of the response read
+     * @param headers  header names to keep, in lower case
+     * @return the response, or null when it does not start with an HTTP status line
+     */
+    static HttpInfo parse(final byte[] response, final int length, final Set<String> headers) {
+        final int headerEnd = indexOf(response, 0, length, new byte[]{'\r', '\n', '\r', '\n'});
+        final int headLength = headerEnd < 0 ? length : headerEnd;
+        final String[] lines = new String(response, 0, headLength, StandardCharsets.ISO_8859_1).split("\r?\n");
+
+        final String[] status = lines[0].split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            return null;
+        }
+        final int statusCode;
+        try {
+            statusCode = Integer.parseInt(status[1]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        final Map<String, String> kept = new LinkedHashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            final int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                final String name = lines[i].substring(0, colon).trim().toLowerCase();
+                if (headers.contains(name) && !kept.containsKey(name)) {
+                    kept.put(name, lines[i].substring(colon + 1).trim());
+                }
+            }
+        }
+
+        final String title = headerEnd < 0 ? null : title(response, headerEnd + 4, length);
+        return new HttpInfo(status[0], statusCode, status.length > 2 ? status[2].trim() : "", kept, title);
+    }
+
+    /**
+     * @return text of the first complete title element in the body, whitespace collapsed
+     */
+    private static String title(final byte[] response, final int from, final int to) {
+        final int open = indexOfIgnoreCase(response, from, to, TITLE_OPEN);
+        if (open < 0) {
+            return null;
+        }
+        final int start = indexOf(response, open + TITLE_OPEN.length, to, new byte[]{'>'});
+        final int end = start < 0 ? -1 : indexOfIgnoreCase(response, start + 1, to, TITLE_CLOSE);
+        if (end < 0) {
+            return null;
+        }
+
+        final String text = new String(response, start + 1, end - start - 1, StandardCharsets.UTF_8)
+                .replaceAll("\\s+", " ").trim()
+                .replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&#39;", "'")
+                .replace("&amp;", "&");
+        return text.isEmpty() ? null : text;
+    }
+
+    private static int indexOf(final byte[] bytes, final int from, final int to, final byte[] find) {
+        outer:
+        for (int i = from; i <= to - find.length; i++) {
+            for (int j = 0; j < find.length; j++) {
+                if (bytes[i + j] != find[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param find lower case ASCII
+     */
+    private static int indexOfIgnoreCase(final byte[] bytes, final int from, final int to, final byte[] find) {
+        outer:
+        for (int i = from; i <= to - find.length; i++) {
+            for (int j = 0; j < find.length; j++) {
+                final int b = bytes[i + j];
+                if ((b >= 'A' && b <= 'Z' ? b + 32 : b) != find[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the request and reads until the title is found, the prefix is full or the server closes.
+     */
+    private static class RequestSession extends NioSession {
+
+        private final ByteBuffer request;
+        private final byte[] response;
+        private final Set<String> headers;
+        private final Consumer<HttpInfo> done;
+        private int length = 0;
+
+        RequestSession(final InetSocketAddress target, final int timeout, final byte[] request, final int maxBytes,
+                       final Set<String> headers, final Consumer<HttpInfo> done) {
+            super(target, timeout);
+            this.request = ByteBuffer.wrap(request);
+            this.response = new byte[maxBytes];
+            this.headers = headers;
+            this.done = done;
+        }
+
+        @Override
+        void connected() throws IOException {
+            ready();
+        }
+
+        @Override
+        void ready() throws IOException {
+            if (request.hasRemaining()) {
+                channel.write(request);
+                interest(request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                return;
+            }
+
+            int read;
+            while ((read = channel.read(ByteBuffer.wrap(response, length, response.length - length))) > 0) {
+                length += read;
+                if (length == response.length || hasTitle()) {
+                    finish();
+                    return;
+                }
+            }
+            if (read < 0) {
+                finish();
+            } else {
+                interest(SelectionKey.OP_READ);
+            }
+        }
+
+        @Override
+        void failed(final Exception e) {
+            // Servers that keep the connection open still answered with what was read.
+            done.accept(length > 0 ? parse(response, length, headers) : null);
+        }
+
+        private boolean hasTitle() {
+            return indexOfIgnoreCase(response, 0, length, TITLE_CLOSE) >= 0;
+        }
+
+        private void finish() {
+            close();
+            done.accept(parse(response, length, headers));
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Response of a web server to a plain GET /, as found by an {@link HttpFingerprinter}.
+ */
+public class HttpInfo implements Serializable {
+
+    private String version;
+    private int statusCode;
+    private String reason;
+    private Map<String, String> headers;
+    private String title;
+
+    public HttpInfo(final String version, final int statusCode, final String reason, final Map<String, String> headers, final String title) {
+        this.version = version;
+        this.statusCode = statusCode;
+        this.reason = reason;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.title = title;
+    }
+
+    /**
+     * @return protocol from the status line, e.g. HTTP/1.1
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the selected headers that were present, by name in lower case
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @param name header name in any case, e.g. Server
+     * @return header value, or null when not present or not selected
+     */
+    public String getHeader(final String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    /**
+     * @return page title, or null when there was none in the part of the body read
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public String toString() {
+        return statusCode + " " + reason + " " + headers + (title != null ? " title=" + title : "");
+    }
+
+}
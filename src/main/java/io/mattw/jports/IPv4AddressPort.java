@@ -8,6 +8,23 @@ public class IPv4AddressPort implements Serializable {
     private int port;
 
     private String fullAddress;
+    private PortStatus status;
+    private int retries;
+    private int requeues;
+    private String hostname;
+    private TlsInfo tlsInfo;
+    private HttpInfo httpInfo;
+    private String tag;
+
+    /**
+     * When the item was last queued, only set while timing {@link ScanStage}s.
+     */
+    transient long queuedNanos;
+
+    /**
+     * Order the item was produced in, only set while results are ordered.
+     */
+    transient long sequence;
 
     /**
      * @param decimal any number
@@ -48,4 +65,97 @@ public class IPv4AddressPort implements Serializable {
         return fullAddress;
     }
 
+    /**
+     * @return outcome of the check, null when the port was not checked
+     */
+    public PortStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(final PortStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return times the check was retried after timing out
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    void incrementRetries() {
+        retries++;
+    }
+
+    /**
+     * @return times the address:port went back in the queue after the thread checking it was abandoned by a watchdog
+     */
+    public int getRequeues() {
+        return requeues;
+    }
+
+    void incrementRequeues() {
+        requeues++;
+    }
+
+    /**
+     * @return hostname of the address when looked up with a {@link ReverseDnsResolver}, otherwise null
+     */
+    public String getHostname() {
+        return hostname;
+    }
+
+    void setHostname(final String hostname) {
+        this.hostname = hostname;
+    }
+
+    /**
+     * @return certificate details when inspected with a {@link TlsInspector} and a handshake completed, otherwise null
+     */
+    public TlsInfo getTlsInfo() {
+        return tlsInfo;
+    }
+
+    void setTlsInfo(final TlsInfo tlsInfo) {
+        this.tlsInfo = tlsInfo;
+    }
+
+    /**
+     * @return web server response when fingerprinted with an {@link HttpFingerprinter} and it answered HTTP, otherwise null
+     */
+    public HttpInfo getHttpInfo() {
+        return httpInfo;
+    }
+
+    void setHttpInfo(final HttpInfo httpInfo) {
+        this.httpInfo = httpInfo;
+    }
+
+    /**
+     * @return value of the longest prefix containing the address when tagged with an {@link IPv4PrefixTable}, otherwise null
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    void setTag(final String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @return address and port packed into a single value, address in the upper bits
+     */
+    public long getPacked() {
+        return pack(iPv4Address.getDecimal(), port);
+    }
+
+    /**
+     * @param decimal IPv4 address decimal
+     * @param port    0-65535
+     * @return address and port packed into a single value, address in the upper bits
+     */
+    public static long pack(final long decimal, final int port) {
+        return (decimal << 16) | port;
+    }
+
 }
@@ -1,11 +1,21 @@
 package io.mattw.jports;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.time.Duration;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
@@ -16,14 +26,107 @@ import java.util.function.Consumer;
  */
 public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
 
+    private static final long RETRY_TICK_MILLIS = 10;
+    private static final int RETRY_WHEEL_SIZE = 512;
+
+    private Protocol protocol = Protocol.TCP;
+    private Map<Integer, byte[]> udpPayloads = UdpPayloads.defaults();
     private boolean checkPortOpen = true;
+    private boolean consumeAllStatuses = false;
     private int checkTimeout = 300;
+    private SourceAddressPool sourceAddressPool;
+    private boolean abortiveClose = false;
+    private boolean reuseAddress = false;
+    private Prober prober;
     private Collection<Integer> ports;
     private Consumer<IPv4AddressPort> progressMethod;
     private Consumer<IPv4AddressPort> consumingMethod;
+    private ProbeCache resultCache;
+    private ConcurrencyController concurrencyController;
+    private ScanSnapshot diffSnapshot;
+    /**
+     * Whether the scan can report closures once finished, so open address:port are tracked for {@link ScanSnapshot#closeUnseen}.
+     */
+    private boolean diffClosures;
+    private Consumer<PortChange> changeMethod;
+    private Consumer<HostResult> hostResultMethod;
+    private int hostInterleave = 1;
+    private int maxProbesPerHost = 0;
+    private int retryCount = 0;
+    private long retryBackoff = 0;
+    private ScanStageListener stageListener;
+    private int resultThreadCount = 0;
+    private int resultQueueSize = 1024;
+    private ResultBackpressure resultBackpressure = ResultBackpressure.BLOCK;
+    private int reorderBufferSize = 0;
+    private ReverseDnsResolver reverseDns;
+    private TlsInspector tlsInspector;
+    private Set<Integer> tlsPorts = Collections.emptySet();
+    private HttpFingerprinter httpFingerprinter;
+    private Set<Integer> httpPorts = Collections.emptySet();
+    private IPv4PrefixTable<String> tagTable;
+    private double samplingPrecision = 0;
+    private boolean firstOpenPerHost = false;
+    private long resultLimit = 0;
+    private long samplingBudget = 0;
+    private long watchdogDeadline = 0;
+    private int maxRequeues = 0;
+
+    private Prober activeProber;
+    private Window asyncWindow;
+    private ExecutorService consumerService;
+
+    /**
+     * Settings that may change while running, see {@link #reconfigure()}. Read once per item.
+     */
+    private volatile LiveSettings live;
+    private final AtomicInteger pendingProbes = new AtomicInteger();
+    private final AtomicInteger pendingLookups = new AtomicInteger();
+    private HostLimiter hostLimiter;
+    private ResultStage resultStage;
+    private ReorderBuffer<IPv4AddressPort> reorderBuffer;
+    private long nextSequence;
+    private final AtomicLong emittedResults = new AtomicLong();
+    private final Map<Long, Set<CompletableFuture<PortStatus>>> hostProbes = new ConcurrentHashMap<>();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder sampledOpen = new LongAdder();
+    private HostTracker hostTracker;
+    private HashedTimerWheel<IPv4AddressPort> retryWheel;
+    private Watchdog<IPv4AddressPort> watchdog;
+    private final AtomicInteger pendingRetries = new AtomicInteger();
+    private final AtomicInteger activeConsumers = new AtomicInteger();
+
+    /**
+     * Hosts reported unreachable, whose remaining ports are skipped. Only hosts still near the front of the
+     * queue matter, so the oldest are forgotten once there are more than the queue can hold.
+     */
+    private final Set<Long> unreachableHosts = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<Long, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+                    return size() > getMaxQueueSize();
+                }
+            }));
+
+    /**
+     * Hosts that already answered with an open port under {@link #firstOpenPerHost}, whose remaining ports are skipped.
+     * Kept for longer than {@link #unreachableHosts}, as forgetting one too soon lets a second port through.
+     */
+    private final Set<Long> answeredHosts = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<Long, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+                    return size() > getMaxQueueSize() * 4 + hostInterleave;
+                }
+            }));
 
     private Queue<IPv4AddressPort> objectQueue = new LinkedBlockingQueue<>();
 
+    /**
+     * Hosts whose ports are being offered in turn when interleaving, only used by the producer.
+     */
+    private final Deque<HostPorts> interleavedHosts = new ArrayDeque<>();
+
     /**
      * Scan a block of addresses
      */
@@ -62,6 +165,13 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
         super(addresses);
     }
 
+    /**
+     * Scan addresses as they are read, without holding them all in memory.
+     */
+    public IPv4BlockPortScan(final Iterator<IPv4Address> addressStream) {
+        super(addressStream);
+    }
+
     public IPv4BlockPortScan setAddressBlock(final IPv4AddressBlock addressBlock) {
         this.addressBlock = addressBlock;
         return this;
@@ -86,6 +196,8 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
      * Additional method consumer that pushes for every address:port grabbed as used by threads
      * and can be used to increment a counter in the external application
      * when {@link #checkPortOpen} is true (because you won't know where it is in the scan otherwise).
+     * <p>
+     * Prefer {@link #setProgressListener(Consumer, long)}, which reports periodically instead of per item.
      */
     public IPv4BlockPortScan setProgressMethod(final Consumer<IPv4AddressPort> progressMethod) {
         this.progressMethod = progressMethod;
@@ -103,6 +215,42 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
         return this;
     }
 
+    /**
+     * Protocol to check ports with.
+     * <p>
+     * In {@link Protocol#UDP} mode a single thread sends datagrams without blocking, so {@link #threadCount}
+     * instead limits how many probes wait for an answer at once. An answered port is {@link PortStatus#OPEN},
+     * one silent past the {@link #checkTimeout} is {@link PortStatus#FILTERED}. The result cache and
+     * concurrency controller only apply to TCP.
+     *
+     * @param protocol default TCP
+     */
+    public IPv4BlockPortScan setProtocol(final Protocol protocol) {
+        this.protocol = Objects.requireNonNull(protocol);
+        return this;
+    }
+
+    /**
+     * Payload sent to each port in UDP mode, ports without one get an empty datagram.
+     *
+     * @param udpPayloads default {@link UdpPayloads#defaults()}
+     */
+    public IPv4BlockPortScan setUdpPayloads(final Map<Integer, byte[]> udpPayloads) {
+        this.udpPayloads = Objects.requireNonNull(udpPayloads);
+        return this;
+    }
+
+    /**
+     * Flag to send every checked address:port to the consumer with its {@link IPv4AddressPort#getStatus()},
+     * not only open ones. Has no effect when {@link #checkPortOpen} is false.
+     *
+     * @param consumeAllStatuses default false
+     */
+    public IPv4BlockPortScan setConsumeAllStatuses(final boolean consumeAllStatuses) {
+        this.consumeAllStatuses = consumeAllStatuses;
+        return this;
+    }
+
     /**
      * limit in milliseconds to timeout when checking a port
      *
@@ -113,28 +261,493 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
         return this;
     }
 
+    /**
+     * Local addresses probe sockets bind to in rotation, each adding its own range of ephemeral ports.
+     * When not set, the operating system picks the local address.
+     */
+    public IPv4BlockPortScan setSourceAddressPool(final SourceAddressPool sourceAddressPool) {
+        this.sourceAddressPool = sourceAddressPool;
+        return this;
+    }
+
+    /**
+     * Close probe sockets with a reset (SO_LINGER 0) instead of a normal close, so they do not
+     * sit in TIME_WAIT holding an ephemeral port.
+     *
+     * @param abortiveClose default false
+     */
+    public IPv4BlockPortScan setAbortiveClose(final boolean abortiveClose) {
+        this.abortiveClose = abortiveClose;
+        return this;
+    }
+
+    /**
+     * Sets SO_REUSEADDR on probe sockets so local ports still in TIME_WAIT can be bound again.
+     *
+     * @param reuseAddress default false
+     */
+    public IPv4BlockPortScan setReuseAddress(final boolean reuseAddress) {
+        this.reuseAddress = reuseAddress;
+        return this;
+    }
+
+    /**
+     * Replaces the TCP connect check, such as with a {@link SimulatedNetwork}. When not set a {@link SocketProber}
+     * with the {@link #sourceAddressPool}, {@link #abortiveClose} and {@link #reuseAddress} of this scan is used.
+     * <p>
+     * With an {@link AsyncProber} a single consumer thread starts probes without waiting for them and
+     * {@link #threadCount} instead limits how many are in flight at once.
+     */
+    public IPv4BlockPortScan setProber(final Prober prober) {
+        this.prober = prober;
+        return this;
+    }
+
+    /**
+     * Adapts the number of probes in flight at runtime instead of relying on a fixed {@link #threadCount}.
+     * When set, the thread count becomes the controller's maximum window and the queue follows the current window.
+     */
+    public IPv4BlockPortScan setConcurrencyController(final ConcurrencyController concurrencyController) {
+        this.concurrencyController = concurrencyController;
+        return this;
+    }
+
+    /**
+     * Optional cache of recent outcomes, which may be shared between scans. Cached address:port
+     * are answered without touching the network and still reach the {@link #consumingMethod}.
+     */
+    public IPv4BlockPortScan setResultCache(final ProbeCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Diff mode, only changes compared to the snapshot of a previous scan are sent to the {@link #changeMethod}.
+     * <p>
+     * Newly open address:port are reported as they are found. Newly closed ones are reported once the
+     * whole scan has finished, as only then is it known they were not found. Scans stopped by {@link #shutdown()}
+     * and endless scans never finish and so never report closures, nor do streamed scans as their targets are
+     * not kept. The snapshot is updated in place.
+     * <p>
+     * The {@link #consumingMethod} becomes optional and still receives every open address:port when set.
+     */
+    public IPv4BlockPortScan setDiffSnapshot(final ScanSnapshot diffSnapshot) {
+        this.diffSnapshot = diffSnapshot;
+        return this;
+    }
+
+    public IPv4BlockPortScan setChangeMethod(final Consumer<PortChange> changeMethod) {
+        this.changeMethod = changeMethod;
+        return this;
+    }
+
+    /**
+     * Sends one {@link HostResult} per address once all of its ports are done, only for addresses with an open port
+     * unless {@link #consumeAllStatuses} is set. Requires {@link #checkPortOpen}. The {@link #consumingMethod} becomes
+     * optional and still receives each address:port when set.
+     */
+    public IPv4BlockPortScan setHostResultMethod(final Consumer<HostResult> hostResultMethod) {
+        this.hostResultMethod = hostResultMethod;
+        return this;
+    }
+
+    /**
+     * Offer ports of this many hosts in turn, one port per host, instead of all ports of one host back to back.
+     * Spreads probes to the same host out over time so port-heavy scans do not look like a flood to it.
+     *
+     * @param hostInterleave default 1, no interleaving
+     */
+    public IPv4BlockPortScan setHostInterleave(final int hostInterleave) {
+        this.hostInterleave = Math.max(1, hostInterleave);
+        return this;
+    }
+
+    /**
+     * Most TCP probes in flight to a single host at once. Items for a host at its limit go back to the
+     * end of the queue while other hosts are probed, so combine with {@link #setHostInterleave(int)} to
+     * keep every thread busy.
+     *
+     * @param maxProbesPerHost default 0, unlimited
+     */
+    public IPv4BlockPortScan setMaxProbesPerHost(final int maxProbesPerHost) {
+        this.maxProbesPerHost = Math.max(0, maxProbesPerHost);
+        return this;
+    }
+
+    /**
+     * Retry TCP probes that time out as {@link PortStatus#FILTERED}, since a single lost packet would otherwise
+     * hide an open port. Retries wait on a timer wheel and go back to the end of the queue when due,
+     * so no thread is blocked waiting for them.
+     *
+     * @param retryCount    retries per address:port, default 0
+     * @param backoffMillis delay before the first retry, doubled for each one after
+     */
+    public IPv4BlockPortScan setRetryPolicy(final int retryCount, final long backoffMillis) {
+        this.retryCount = Math.max(0, retryCount);
+        this.retryBackoff = Math.max(1, backoffMillis);
+        return this;
+    }
+
+    /**
+     * Reports the time each address:port spends in every {@link ScanStage}, such as to {@link StageTimings}
+     * or {@link JfrStageListener}. The clock is only read while a listener is set. UDP probes only report
+     * the producer and consumer stages.
+     */
+    public IPv4BlockPortScan setStageListener(final ScanStageListener stageListener) {
+        this.stageListener = stageListener;
+        return this;
+    }
+
+    /**
+     * Hands results to threads of their own instead of running the {@link #consumingMethod} and {@link #changeMethod}
+     * on the probe threads, so slow result handling does not slow probing down. {@link #await()} also waits for
+     * the results still queued.
+     *
+     * @param resultThreadCount default 0, results are handled by the probe threads
+     */
+    public IPv4BlockPortScan setResultThreadCount(final int resultThreadCount) {
+        this.resultThreadCount = Math.max(0, resultThreadCount);
+        return this;
+    }
+
+    /**
+     * Results waiting for a result thread before the {@link #resultBackpressure} applies.
+     *
+     * @param resultQueueSize default 1024
+     */
+    public IPv4BlockPortScan setResultQueueSize(final int resultQueueSize) {
+        this.resultQueueSize = Math.max(1, resultQueueSize);
+        return this;
+    }
+
+    /**
+     * @param resultBackpressure default {@link ResultBackpressure#BLOCK}
+     */
+    public IPv4BlockPortScan setResultBackpressure(final ResultBackpressure resultBackpressure) {
+        this.resultBackpressure = Objects.requireNonNull(resultBackpressure);
+        return this;
+    }
+
+    /**
+     * Sends results on in the order address:ports were produced instead of the order probes finish: ascending
+     * address:port for block scans with sorted ports and no host interleave. Results finished early wait in a
+     * reorder buffer behind the oldest address:port still being checked, and production waits while the buffer
+     * is full, so a slow host holds back the scan by at most this many address:ports.
+     * <p>
+     * Not available for UDP, and results can use at most one result thread without caller runs backpressure.
+     *
+     * @param reorderBufferSize address:ports in flight at once, default 0 for unordered
+     */
+    public IPv4BlockPortScan setOrderedResults(final int reorderBufferSize) {
+        this.reorderBufferSize = Math.max(0, reorderBufferSize);
+        return this;
+    }
+
+    /**
+     * Checks a uniformly random sample of the address:ports in the block instead of all of them, each at most once,
+     * to estimate the fraction that are open, see {@link #getSampleEstimate()}. Sampling stops once the 95% interval
+     * is within the precision or the budget is spent, whichever comes first. Probes already in flight still complete
+     * and count towards the estimate. Only for {@link ScanMethod#RANGE_ADDRESS}, and not in diff mode, where every
+     * address:port left out would be reported closed.
+     *
+     * @param precision half width of the interval to stop at, e.g. 0.005 for within half a percent, 0 for none
+     * @param budget    most address:ports to check, 0 for no limit
+     */
+    public IPv4BlockPortScan setSampling(final double precision, final long budget) {
+        this.samplingPrecision = Math.max(0, precision);
+        this.samplingBudget = Math.max(0, budget);
+        return this;
+    }
+
+    /**
+     * Answers whether anything is listening on each host: once a host has an open port, its ports still queued
+     * are skipped and its asynchronous probes in flight are cancelled, so at most one open port per host is sent on.
+     * Not available for UDP, with host results, or in diff mode, where the skipped ports would be reported closed.
+     */
+    public IPv4BlockPortScan setFirstOpenPerHost(final boolean firstOpenPerHost) {
+        this.firstOpenPerHost = firstOpenPerHost;
+        return this;
+    }
+
+    /**
+     * Ends the scan once this many results have been sent on, exactly, with any further results discarded.
+     * In ordered mode these are the first results in order.
+     *
+     * @param resultLimit default 0 for no limit
+     */
+    public IPv4BlockPortScan setResultLimit(final long resultLimit) {
+        this.resultLimit = Math.max(0, resultLimit);
+        return this;
+    }
+
+    /**
+     * Replaces probe threads that spend longer than the deadline on one address:port, such as in a connect that
+     * ignores its timeout or a {@link #consumingMethod} that never returns, so a few stuck threads do not hold up
+     * the rest of the scan. A stuck thread is interrupted and no longer waited for. Its address:port goes back in
+     * the queue if it was still being checked, up to the given number of times, after which it is reported
+     * {@link PortStatus#FILTERED}. Only for blocking TCP probes, not on a {@link ScanRuntime}.
+     *
+     * @param deadlineMillis time allowed per address:port including sending the result on, default 0 for no watchdog
+     * @param maxRequeues    times an address:port is put back in the queue, default 0
+     */
+    public IPv4BlockPortScan setWatchdog(final long deadlineMillis, final int maxRequeues) {
+        this.watchdogDeadline = Math.max(0, deadlineMillis);
+        this.maxRequeues = Math.max(0, maxRequeues);
+        return this;
+    }
+
+    /**
+     * Tags each address:port and {@link HostResult} sent on with the value of the longest prefix containing its
+     * address, such as the network or team owning it. Fill the table before the scan starts.
+     */
+    public IPv4BlockPortScan setTagTable(final IPv4PrefixTable<String> tagTable) {
+        this.tagTable = tagTable;
+        return this;
+    }
+
+    /**
+     * Looks up the hostname of each address:port and {@link HostResult} before it is sent on, without holding up
+     * probing. Share one resolver between scans to share its cache.
+     */
+    public IPv4BlockPortScan setReverseDns(final ReverseDnsResolver reverseDns) {
+        this.reverseDns = reverseDns;
+        return this;
+    }
+
+    /**
+     * Reads the certificate of open address:ports on the given ports with a TLS handshake before they are sent on,
+     * see {@link IPv4AddressPort#getTlsInfo()}. Share one inspector between scans to share its cache.
+     *
+     * @param ports ports expected to speak TLS, e.g. 443 and 8443
+     */
+    public IPv4BlockPortScan setTlsInspector(final TlsInspector tlsInspector, final Collection<Integer> ports) {
+        this.tlsInspector = tlsInspector;
+        this.tlsPorts = new HashSet<>(ports);
+        return this;
+    }
+
+    /**
+     * Reads the status, selected headers and title that open address:ports on the given ports answer to a GET /
+     * before they are sent on, see {@link IPv4AddressPort#getHttpInfo()}.
+     *
+     * @param ports ports expected to speak plain HTTP, e.g. 80 and 8080
+     */
+    public IPv4BlockPortScan setHttpFingerprinter(final HttpFingerprinter httpFingerprinter, final Collection<Integer> ports) {
+        this.httpFingerprinter = httpFingerprinter;
+        this.httpPorts = new HashSet<>(ports);
+        return this;
+    }
+
+    /**
+     * Starts a change of the thread count, rate limit, timeout, ports, or excluded prefixes of the running scan,
+     * without losing its position. Changes apply together once {@link ScanReconfiguration#apply()} is called:
+     * probes already in flight finish as they started, and address:ports already queued whose port was removed or
+     * address excluded are skipped. Ports and exclusions cannot change with host results, sampling, or diff mode,
+     * and nothing can change for UDP.
+     */
+    public ScanReconfiguration reconfigure() {
+        return new ScanReconfiguration(this);
+    }
+
+    synchronized void apply(final ScanReconfiguration change) {
+        final LiveSettings current = live;
+        if (current == null || isConsumingFinished()) {
+            throw new IllegalStateException("Only a running scan can be reconfigured.");
+        }
+        if (isUdp()) {
+            throw new IllegalStateException("UDP scans cannot be reconfigured.");
+        }
+        if (change.getThreadCount() != null && (concurrencyController != null || runtimeDone != null)) {
+            throw new IllegalStateException("Thread count is set by the concurrency controller or runtime.");
+        }
+        if (change.changesTargets() && (hostTracker != null || isSampling() || diffSnapshot != null)) {
+            throw new IllegalStateException("Ports and exclusions cannot change with host results, sampling, or diff mode.");
+        }
+
+        final Set<Integer> nextPorts = new LinkedHashSet<>(current.getPorts());
+        nextPorts.removeAll(change.getRemovedPorts());
+        nextPorts.addAll(change.getAddedPorts());
+        if (nextPorts.isEmpty()) {
+            throw new IllegalStateException("Ports list should not be empty.");
+        }
+        final Set<String> nextExclusions = new LinkedHashSet<>(current.getExclusions());
+        nextExclusions.removeAll(change.getRemovedExclusions());
+        nextExclusions.addAll(change.getAddedExclusions());
+        final boolean sameExclusions = nextExclusions.equals(new LinkedHashSet<>(current.getExclusions()));
+
+        final LiveSettings next = new LiveSettings(
+                change.getThreadCount() != null ? change.getThreadCount() : current.getThreadCount(),
+                change.getCheckTimeout() != null ? change.getCheckTimeout() : current.getCheckTimeout(),
+                nextPorts, nextExclusions, sameExclusions ? current.getExcluded() : null);
+        live = next;
+
+        threadCount = next.getThreadCount();
+        checkTimeout = next.getCheckTimeout();
+        ports = next.getPorts();
+        if (change.getRateLimit() != null) {
+            if (change.getRateLimit() == 0) {
+                rateLimiter = null;
+            } else if (rateLimiter != null) {
+                rateLimiter.setRate(change.getRateLimit());
+            } else {
+                rateLimiter = new RateLimiter(change.getRateLimit());
+            }
+        }
+        if (next.getThreadCount() != current.getThreadCount()) {
+            resize(next.getThreadCount() - current.getThreadCount());
+        }
+    }
+
+    /**
+     * Grows or shrinks the window of asynchronous probes, or starts more probe threads. Surplus probe threads stop
+     * on their own in {@link #retire()}.
+     */
+    private void resize(final int difference) {
+        if (asyncWindow != null) {
+            asyncWindow.resize(difference);
+            return;
+        }
+
+        for (int i = 0; i < difference; i++) {
+            int active;
+            do {
+                active = activeConsumers.get();
+                if (active == 0) {
+                    return;
+                }
+            } while (!activeConsumers.compareAndSet(active, active + 1));
+
+            if (watchdog != null) {
+                watchdog.addWorker();
+            } else {
+                consumers.submit(this::consumer);
+            }
+        }
+    }
+
+    /**
+     * Stops the calling probe thread when there are more than the thread count, never the last one.
+     *
+     * @return whether the thread should stop
+     */
+    private boolean retire() {
+        int active;
+        while ((active = activeConsumers.get()) > live.getThreadCount()) {
+            if (activeConsumers.compareAndSet(active, active - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public IPv4BlockPortScan execute() {
-        Objects.requireNonNull(consumingMethod);
+        prepare();
+
+        producer.submitAndShutdown(this::producer);
+
+        final int consumerCount = isUdp() || isAsync() ? 1 : threadCount;
+        activeConsumers.set(consumerCount);
+        if (watchdog != null) {
+            consumers = watchdog.start(consumerCount, this::consumer);
+        } else if (isUdp() || isAsync()) {
+            consumers = new ExecutorGroup(consumerCount);
+            consumers.submitAndShutdown(this::consumer);
+        } else {
+            // Blocking probe threads can be added while running, see resize.
+            consumerService = Executors.newCachedThreadPool();
+            consumers = new ExecutorGroup(consumerService, 0);
+            for (int i = 0; i < consumerCount; i++) {
+                consumers.submit(this::consumer);
+            }
+        }
+
+        startProgressReporter();
+
+        return this;
+    }
+
+    @Override
+    void prepare() {
         Objects.requireNonNull(ports);
+        if (diffSnapshot != null) {
+            Objects.requireNonNull(changeMethod);
+
+            if (!checkPortOpen) {
+                throw new IllegalStateException("Diff mode requires checking ports open.");
+            }
+            if (resultThreadCount > 0 && resultBackpressure == ResultBackpressure.DROP) {
+                throw new IllegalStateException("Diff mode cannot drop results.");
+            }
+        } else if (hostResultMethod == null) {
+            Objects.requireNonNull(consumingMethod);
+        }
+
+        if (hostResultMethod != null && !checkPortOpen) {
+            throw new IllegalStateException("Host results require checking ports open.");
+        }
 
         if (ports.isEmpty()) {
             throw new IllegalStateException("Ports list should not be empty.");
         }
 
-        producer.submitAndShutdown(this::producer);
+        if (reorderBufferSize > 0 && isUdp()) {
+            throw new IllegalStateException("Ordered results are not supported for UDP.");
+        }
+        if (reorderBufferSize > 0 && (resultThreadCount > 1 || resultThreadCount == 1 && resultBackpressure == ResultBackpressure.CALLER_RUNS)) {
+            throw new IllegalStateException("Ordered results allow at most one result thread, without caller runs backpressure.");
+        }
 
-        consumers = new ExecutorGroup(threadCount);
-        consumers.submitAndShutdown(this::consumer);
+        if (firstOpenPerHost && (!checkPortOpen || isUdp() || hostResultMethod != null || diffSnapshot != null)) {
+            throw new IllegalStateException("First open port per host requires checking TCP ports open, without host results or diff mode.");
+        }
 
-        return this;
+        if (isSampling() && (scanMethod != ScanMethod.RANGE_ADDRESS || !checkPortOpen || hostResultMethod != null || diffSnapshot != null)) {
+            throw new IllegalStateException("Sampling requires a block scan checking ports open, without host results or diff mode.");
+        }
+
+        if (watchdogDeadline > 0 && (!checkPortOpen || isUdp() || isAsync())) {
+            throw new IllegalStateException("The watchdog requires checking ports open with blocking TCP probes.");
+        }
+
+        if (concurrencyController != null) {
+            threadCount = concurrencyController.getMaxWindow();
+        }
+
+        hostLimiter = maxProbesPerHost > 0 ? new HostLimiter(maxProbesPerHost) : null;
+        activeProber = prober != null ? prober : new SocketProber()
+                .setSourceAddressPool(sourceAddressPool)
+                .setAbortiveClose(abortiveClose)
+                .setReuseAddress(reuseAddress);
+        asyncWindow = isAsync() && concurrencyController == null ? new Window(Math.max(1, threadCount)) : null;
+        live = new LiveSettings(threadCount, checkTimeout, ports, Collections.emptyList(), null);
+        hostTracker = hostResultMethod != null ? new HostTracker(ports) : null;
+        resultStage = resultThreadCount > 0 ? new ResultStage(resultThreadCount, resultQueueSize, resultBackpressure) : null;
+        reorderBuffer = reorderBufferSize > 0 ? new ReorderBuffer<>(reorderBufferSize, this::emit) : null;
+        diffClosures = diffSnapshot != null && (scanMethod == ScanMethod.SINGLE_ADDRESS
+                || scanMethod == ScanMethod.RANGE_ADDRESS || scanMethod == ScanMethod.MULTI_ADDRESS);
+        if (diffSnapshot != null) {
+            diffSnapshot.beginScan();
+        }
+        emittedResults.set(0);
+        answeredHosts.clear();
+        nextSequence = 0;
+        sampled.reset();
+        sampledOpen.reset();
+        retryWheel = retryCount > 0 && !isUdp() ? new HashedTimerWheel<>(RETRY_TICK_MILLIS, RETRY_WHEEL_SIZE, this::retry) : null;
+        watchdog = watchdogDeadline > 0 ? new Watchdog<>(watchdogDeadline, this::requeue) : null;
     }
 
     @Override
     void producer() {
+        if (isSampling()) {
+            offerSample();
+            return;
+        }
+
         switch (scanMethod) {
             case SINGLE_ADDRESS:
-                if (offerPorts(startAddress)) {
+                if (offerHost(startAddress)) {
                     break;
                 }
                 break;
@@ -142,7 +755,7 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
             case RANGE_ADDRESS:
                 IPv4Address address1 = addressBlock.getFirstAddress();
                 do {
-                    if (offerPorts(address1)) {
+                    if (offerHost(address1)) {
                         break;
                     }
 
@@ -152,7 +765,7 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
 
             case MULTI_ADDRESS:
                 for (IPv4Address address2 : addresses) {
-                    if (offerPorts(address2)) {
+                    if (offerHost(address2)) {
                         break;
                     }
 
@@ -162,11 +775,19 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
                 }
                 break;
 
+            case STREAM_ADDRESS:
+                while (addressStream.hasNext() && !shutdown) {
+                    if (offerHost(addressStream.next())) {
+                        break;
+                    }
+                }
+                break;
+
             case ENDLESS_DECREASE:
             case ENDLESS_INCREASE:
                 IPv4Address address3 = startAddress;
                 do {
-                    if (offerPorts(address3)) {
+                    if (offerHost(address3)) {
                         break;
                     }
 
@@ -176,28 +797,141 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
                         address3 = address3.prevAddress();
                     }
                 } while (!shutdown);
+                break;
 
             default:
                 throw new IllegalStateException("Could not determine which scan method to perform.");
         }
+
+        offerInterleaved(0);
     }
 
     /**
-     * Cycles through the list of ports for this address to offer to consumers
-     *
-     * @param address any address
-     * @return ended from shutdown
+     * Offers address:ports of the block in a random order until the sample is precise enough or the budget is spent.
      */
-    private boolean offerPorts(final IPv4Address address) {
-        for (Integer port : ports) {
-            waitAndOfferToQueue(objectQueue, new IPv4AddressPort(address, port));
+    private void offerSample() {
+        final List<Integer> portList = new ArrayList<>(ports);
+        final long first = addressBlock.getFirstAddress().getDecimal();
+        final RandomPermutation permutation = new RandomPermutation(addressBlock.getSize() * portList.size(),
+                ThreadLocalRandom.current().nextLong());
+
+        long offered = 0;
+        long index;
+        while (!shutdown && (samplingBudget == 0 || offered < samplingBudget) && (index = permutation.next()) >= 0) {
+            if (samplingPrecision > 0 && sampled.sum() > 0 && getSampleEstimate().getHalfWidth() <= samplingPrecision) {
+                break;
+            }
+
+            offer(new IPv4AddressPort(new IPv4Address(first + index / portList.size()), portList.get((int) (index % portList.size()))));
+            offered++;
+        }
+    }
+
+    /**
+     * Offers the ports of an address directly, or adds it to the hosts being interleaved.
+     *
+     * @param address any address
+     * @return ended from shutdown
+     */
+    private boolean offerHost(final IPv4Address address) {
+        final LiveSettings settings = live;
+        if (settings.isExcluded(address.getDecimal())) {
+            skipPorts(address, settings.getPorts().size());
+            return shutdown;
+        }
+        if (hostInterleave <= 1) {
+            return offerPorts(address, settings.getPorts());
+        }
+
+        interleavedHosts.add(new HostPorts(address, settings.getPorts()));
+        return offerInterleaved(hostInterleave - 1);
+    }
+
+    /**
+     * Offers one port of each interleaved host in turn, until no more than the given number of hosts have ports left.
+     *
+     * @param remainingHosts hosts to leave for later
+     * @return ended from shutdown
+     */
+    private boolean offerInterleaved(final int remainingHosts) {
+        while (interleavedHosts.size() > remainingHosts) {
+            final HostPorts host = interleavedHosts.poll();
+            if (isSkippedHost(host.address.getDecimal())) {
+                skipPorts(host.address, host.portCount - host.offered);
+                continue;
+            }
+
+            offer(new IPv4AddressPort(host.address, host.ports.next()));
+            host.offered++;
+            if (host.ports.hasNext()) {
+                interleavedHosts.add(host);
+            }
+
+            if (shutdown) {
+                return true;
+            }
+
+            // Without delay, would freeze JavaFX UI despite being on a separate thread.
+            pause(false);
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the host was found unreachable or already answered, so its remaining ports are not offered
+     */
+    private boolean isSkippedHost(final long decimal) {
+        return unreachableHosts.contains(decimal) || firstOpenPerHost && answeredHosts.contains(decimal);
+    }
+
+    /**
+     * Counts ports of a skipped host that will not be offered as done, so progress still adds up to the total.
+     */
+    private void skipPorts(final IPv4Address address, final int count) {
+        completedItems.add(count);
+        if (hostTracker != null) {
+            deliverHost(hostTracker.skip(address.getDecimal(), count));
+        }
+    }
+
+    private void offer(final IPv4AddressPort addressPort) {
+        final long start = stageStart();
+        if (reorderBuffer != null) {
+            addressPort.sequence = nextSequence++;
+            reorderBuffer.awaitRoom(addressPort.sequence, () -> shutdown);
+        }
+        waitAndOfferToQueue(objectQueue, addressPort);
+        if (stageListener != null) {
+            stageEnd(ScanStage.OFFER, addressPort, null, start);
+            addressPort.queuedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Cycles through the list of ports for this address to offer to consumers
+     *
+     * @param address any address
+     * @param ports   ports at the time the address was produced
+     * @return ended from shutdown
+     */
+    private boolean offerPorts(final IPv4Address address, final List<Integer> ports) {
+        int offered = 0;
+        for (Integer port : ports) {
+            if (isSkippedHost(address.getDecimal())) {
+                skipPorts(address, ports.size() - offered);
+                break;
+            }
+
+            offer(new IPv4AddressPort(address, port));
+            offered++;
 
             if (shutdown) {
                 return true;
             }
 
             // Without delay, would freeze JavaFX UI despite being on a separate thread.
-            sleep(2);
+            pause(false);
         }
 
         return false;
@@ -205,40 +939,656 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
 
     @Override
     void consumer() {
+        boolean retired = false;
+        try {
+            if (isUdp()) {
+                consumeUdp();
+            } else {
+                retired = consume();
+            }
+        } finally {
+            // An abandoned thread's place was already taken by its replacement, a retired one was already uncounted.
+            final boolean abandoned = watchdog != null && watchdog.isAbandoned();
+            if (!abandoned && !retired && activeConsumers.decrementAndGet() == 0) {
+                finished();
+            }
+        }
+    }
+
+    /**
+     * @return whether the thread stopped early as the thread count was lowered
+     */
+    private boolean consume() {
         final String threadId = UUID.randomUUID().toString();
-        while (producer.isStillWorking() || !objectQueue.isEmpty()) {
-            final IPv4AddressPort addressPort = objectQueue.poll();
+        // Pending retries are checked first, as they are queued before no longer counting as pending.
+        while (producer.isStillWorking() || hasPendingWork() || !objectQueue.isEmpty()) {
+            final boolean consumed = consumeNext(threadId);
 
-            if (addressPort != null) {
-                updateThreadTime(threadId);
-                if(progressMethod != null) {
-                    progressMethod.accept(addressPort);
-                }
+            if (shutdown || watchdog != null && watchdog.isAbandoned()) {
+                break;
+            }
+            if (asyncWindow == null && retire()) {
+                return true;
+            }
 
-                if (!checkPortOpen || checkPortOpen && isPortOpen(addressPort)) {
-                    consumingMethod.accept(addressPort);
+            // Without delay, would freeze JavaFX UI despite being on a separate thread.
+            pause(!consumed);
+        }
+        return false;
+    }
+
+    @Override
+    boolean consumeNext(final String threadId) {
+        final IPv4AddressPort addressPort = objectQueue.poll();
+        if (addressPort == null) {
+            return false;
+        }
+
+        // Released by releaseHost once the probe is done.
+        if (hostLimiter != null && checkPortOpen && !hostLimiter.tryAcquire(addressPort.getiPv4Address().getDecimal())) {
+            // Host is busy, let other hosts go first.
+            objectQueue.offer(addressPort);
+            return false;
+        }
+
+        process(threadId, addressPort);
+        return true;
+    }
+
+    private void process(final String threadId, final IPv4AddressPort addressPort) {
+        if (stageListener != null) {
+            stageEnd(ScanStage.QUEUE, addressPort, null, addressPort.queuedNanos);
+        }
+        updateThreadTime(threadId);
+        if (watchdog != null) {
+            watchdog.busy();
+        }
+        if(progressMethod != null && addressPort.getRetries() == 0 && addressPort.getRequeues() == 0) {
+            progressMethod.accept(addressPort);
+        }
+
+        if (live.isWithdrawn(addressPort)) {
+            // Its port was removed or its address excluded after it was queued.
+            if (checkPortOpen) {
+                releaseHost(addressPort);
+            }
+            skip(addressPort);
+        } else if (!checkPortOpen) {
+            completedItems.increment();
+            deliver(addressPort);
+        } else if (firstOpenPerHost && answeredHosts.contains(addressPort.getiPv4Address().getDecimal())) {
+            releaseHost(addressPort);
+            skip(addressPort);
+        } else if (addressPort.getRequeues() > maxRequeues) {
+            // Every thread checking it was abandoned, so it is treated as never answering.
+            releaseHost(addressPort);
+            complete(addressPort, PortStatus.FILTERED);
+        } else if (isAsync()) {
+            probeAsync(addressPort);
+        } else {
+            if (watchdog != null) {
+                watchdog.begin(addressPort);
+            }
+            final PortStatus status;
+            final boolean claimed;
+            try {
+                status = probe(addressPort);
+            } finally {
+                // Otherwise the watchdog abandoned this thread and already handed the address:port back.
+                claimed = watchdog == null || watchdog.end(addressPort);
+                if (claimed) {
+                    releaseHost(addressPort);
                 }
             }
+            if (claimed) {
+                complete(addressPort, status);
+            }
+        }
 
-            if (shutdown) {
-                break;
+        if (watchdog != null) {
+            watchdog.idle();
+        }
+    }
+
+    /**
+     * Takes the outcome of a check, retrying or delivering it.
+     */
+    private void complete(final IPv4AddressPort addressPort, final PortStatus status) {
+        addressPort.setStatus(status);
+        if (firstOpenPerHost && !answer(addressPort, status)) {
+            skip(addressPort);
+            return;
+        }
+        if (scheduleRetry(addressPort)) {
+            return;
+        }
+
+        completedItems.increment();
+        countSample(status);
+        if (consumeAllStatuses || status == PortStatus.OPEN) {
+            deliver(addressPort);
+        } else if (reorderBuffer != null) {
+            reorderBuffer.complete(addressPort.sequence, null);
+        }
+        completeHost(addressPort.getiPv4Address().getDecimal(), addressPort.getPort(), status);
+    }
+
+    /**
+     * Records the first open port of a host under {@link #firstOpenPerHost}, cancelling the host's other probes.
+     *
+     * @return false when the host already answered and the outcome is not wanted
+     */
+    private boolean answer(final IPv4AddressPort addressPort, final PortStatus status) {
+        final long decimal = addressPort.getiPv4Address().getDecimal();
+        if (status != PortStatus.OPEN) {
+            return !answeredHosts.contains(decimal);
+        }
+        if (!answeredHosts.add(decimal)) {
+            return false;
+        }
+
+        final Set<CompletableFuture<PortStatus>> inFlight = hostProbes.remove(decimal);
+        if (inFlight != null) {
+            for (CompletableFuture<PortStatus> probe : inFlight) {
+                probe.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts an address:port as done without an outcome, as its host already answered.
+     */
+    private void skip(final IPv4AddressPort addressPort) {
+        completedItems.increment();
+        if (reorderBuffer != null) {
+            reorderBuffer.complete(addressPort.sequence, null);
+        }
+    }
+
+    private void countSample(final PortStatus status) {
+        if (isSampling()) {
+            sampled.increment();
+            if (status == PortStatus.OPEN) {
+                sampledOpen.increment();
             }
+        }
+    }
 
-            // Without delay, would freeze JavaFX UI despite being on a separate thread.
-            sleep(2);
+    private boolean isSampling() {
+        return samplingPrecision > 0 || samplingBudget > 0;
+    }
+
+    private void releaseHost(final IPv4AddressPort addressPort) {
+        if (hostLimiter != null) {
+            hostLimiter.release(addressPort.getiPv4Address().getDecimal());
         }
     }
 
-    private boolean isPortOpen(final IPv4AddressPort addressPort) {
-        try {
-            Socket socket = new Socket();
-            socket.connect(new InetSocketAddress(addressPort.getiPv4Address().getAddress(), addressPort.getPort()), checkTimeout);
-            socket.close();
+    private void completeHost(final long decimal, final int port, final PortStatus status) {
+        if (hostTracker != null) {
+            deliverHost(hostTracker.complete(decimal, port, status));
+        }
+    }
+
+    /**
+     * Sends a finished host to the {@link #hostResultMethod}, through the {@link #resultStage} when there is one.
+     *
+     * @param hostResult null while the host still has ports left
+     */
+    private void deliverHost(final HostResult hostResult) {
+        if (hostResult == null || !consumeAllStatuses && !hostResult.hasOpenPorts()) {
+            return;
+        }
+        if (tagTable != null) {
+            hostResult.setTag(tagTable.lookup(hostResult.getAddress().getDecimal()));
+        }
+
+        if (reverseDns != null) {
+            lookup(hostResult.getAddress(), hostname -> {
+                hostResult.setHostname(hostname);
+                dispatch(() -> hostResultMethod.accept(hostResult));
+            });
+        } else {
+            dispatch(() -> hostResultMethod.accept(hostResult));
+        }
+    }
+
+    /**
+     * @return whether the outcome is a time out that will be retried instead of being final
+     */
+    private boolean shouldRetry(final IPv4AddressPort addressPort, final PortStatus status) {
+        return retryWheel != null && status == PortStatus.FILTERED && addressPort.getRetries() < retryCount && !shutdown;
+    }
+
+    /**
+     * Puts a timed out address:port on the {@link #retryWheel} when it has retries left.
+     *
+     * @return whether a retry was scheduled
+     */
+    private boolean scheduleRetry(final IPv4AddressPort addressPort) {
+        if (!shouldRetry(addressPort, addressPort.getStatus())) {
+            return false;
+        }
+
+        final long delay = retryBackoff << Math.min(addressPort.getRetries(), 16);
+        addressPort.incrementRetries();
+        pendingRetries.incrementAndGet();
+        retryWheel.schedule(addressPort, delay);
+        return true;
+    }
+
+    /**
+     * Called by the {@link #retryWheel} once a retry is due. Skips the queue size limit so the wheel never blocks.
+     */
+    private void retry(final IPv4AddressPort addressPort) {
+        addressPort.queuedNanos = stageStart();
+        objectQueue.offer(addressPort);
+        pendingRetries.decrementAndGet();
+    }
+
+    /**
+     * Called by the {@link #watchdog} with an address:port taken from an abandoned thread before it was checked.
+     * Skips the queue size limit so the watchdog never blocks.
+     */
+    private void requeue(final IPv4AddressPort addressPort) {
+        releaseHost(addressPort);
+        addressPort.incrementRequeues();
+        objectQueue.offer(addressPort);
+    }
+
+    @Override
+    boolean hasPendingWork() {
+        // Probes and lookups in flight are always waited for, they complete within their timeouts.
+        return pendingProbes.get() > 0 || pendingLookups.get() > 0 || pendingRetries.get() > 0 && !shutdown;
+    }
+
+    private boolean isUdp() {
+        return protocol == Protocol.UDP && checkPortOpen;
+    }
+
+    private boolean isAsync() {
+        return prober instanceof AsyncProber && !isUdp();
+    }
 
-            return true;
+    @Override
+    boolean supportsRuntime() {
+        return !isUdp() && watchdogDeadline == 0;
+    }
+
+    private void consumeUdp() {
+        final UdpProbeEngine engine = new UdpProbeEngine(objectQueue, udpPayloads, threadCount, checkTimeout, rateLimiter,
+                producer::isStillWorking, () -> shutdown, (status, packed) -> {
+                    completedItems.increment();
+                    countSample(status);
+                    if (consumeAllStatuses || status == PortStatus.OPEN) {
+                        final IPv4AddressPort addressPort = new IPv4AddressPort(packed >>> 16, (int) (packed & 0xFFFF));
+                        addressPort.setStatus(status);
+                        deliver(addressPort);
+                    }
+                    completeHost(packed >>> 16, (int) (packed & 0xFFFF), status);
+                });
+
+        try {
+            engine.run();
         } catch (IOException e) {
+            throw new IllegalStateException("UDP probing failed.", e);
+        }
+
+        while (pendingLookups.get() > 0) {
+            pause(true);
+        }
+    }
+
+    /**
+     * Sends an address:port on once its hostname, certificate and web page are known, when looking them up.
+     */
+    private void deliver(final IPv4AddressPort addressPort) {
+        if (tagTable != null) {
+            addressPort.setTag(tagTable.lookup(addressPort.getiPv4Address().getDecimal()));
+        }
+
+        final boolean open = addressPort.getStatus() == PortStatus.OPEN;
+        final boolean inspectTls = tlsInspector != null && open && tlsPorts.contains(addressPort.getPort());
+        final boolean fingerprintHttp = httpFingerprinter != null && open && httpPorts.contains(addressPort.getPort());
+        if (reverseDns == null && !inspectTls && !fingerprintHttp) {
+            send(addressPort);
+            return;
+        }
+
+        final CompletableFuture<Void> hostname = reverseDns == null ? CompletableFuture.completedFuture(null)
+                : reverseDns.resolve(addressPort.getiPv4Address()).thenAccept(addressPort::setHostname);
+        final CompletableFuture<Void> tlsInfo = !inspectTls ? CompletableFuture.completedFuture(null)
+                : tlsInspector.inspect(addressPort).thenAccept(addressPort::setTlsInfo);
+        final CompletableFuture<Void> httpInfo = !fingerprintHttp ? CompletableFuture.completedFuture(null)
+                : httpFingerprinter.fingerprint(addressPort).thenAccept(addressPort::setHttpInfo);
+        whenDone(CompletableFuture.allOf(hostname, tlsInfo, httpInfo), () -> send(addressPort));
+    }
+
+    /**
+     * Sends a result on, after the results produced before it when ordered.
+     */
+    private void send(final IPv4AddressPort addressPort) {
+        if (reorderBuffer != null) {
+            reorderBuffer.complete(addressPort.sequence, addressPort);
+        } else {
+            emit(addressPort);
+        }
+    }
+
+    /**
+     * Hands a result to the consumers, ending the scan once the {@link #resultLimit} is reached.
+     */
+    private void emit(final IPv4AddressPort addressPort) {
+        if (resultLimit > 0) {
+            final long emitted = emittedResults.incrementAndGet();
+            if (emitted > resultLimit) {
+                return;
+            }
+            if (emitted == resultLimit) {
+                shutdown();
+            }
+        }
+        // Marked before handing off, so closures found once the scan finishes never include a port still queued.
+        final boolean opened = diffSnapshot != null && addressPort.getStatus() == PortStatus.OPEN && diffSnapshot.markOpen(addressPort, diffClosures);
+        dispatch(() -> handleResult(addressPort, opened));
+    }
+
+    /**
+     * Runs a result on the {@link #resultStage} when there is one, or right away.
+     */
+    private void dispatch(final Runnable result) {
+        if (resultStage != null) {
+            resultStage.submit(result);
+        } else {
+            result.run();
+        }
+    }
+
+    /**
+     * Looks up a hostname with the {@link #reverseDns}, counted as pending work until the result has been sent on.
+     */
+    private void lookup(final IPv4Address address, final Consumer<String> then) {
+        final CompletableFuture<String> hostname = reverseDns.resolve(address);
+        whenDone(hostname, () -> then.accept(hostname.getNow(null)));
+    }
+
+    /**
+     * Runs a step once lookups for a result are done, counted as pending work until then.
+     */
+    private void whenDone(final CompletableFuture<?> lookups, final Runnable then) {
+        pendingLookups.incrementAndGet();
+        lookups.whenComplete((value, error) -> {
+            try {
+                then.run();
+            } finally {
+                pendingLookups.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Sends an address:port to the consumers, or only when it changed while in diff mode.
+     *
+     * @param opened whether the address:port is newly open compared to the {@link #diffSnapshot}
+     */
+    private void handleResult(final IPv4AddressPort addressPort, final boolean opened) {
+        if (opened) {
+            changeMethod.accept(new PortChange(addressPort, PortChange.Type.OPENED));
+        }
+
+        if (consumingMethod != null) {
+            final long start = stageStart();
+            consumingMethod.accept(addressPort);
+            stageEnd(ScanStage.CONSUME, addressPort, addressPort.getStatus(), start);
+        }
+    }
+
+    /**
+     * @return start time of a stage, only read while a {@link #stageListener} is set
+     */
+    private long stageStart() {
+        return stageListener != null ? System.nanoTime() : 0;
+    }
+
+    private void stageEnd(final ScanStage stage, final IPv4AddressPort addressPort, final PortStatus outcome, final long start) {
+        if (stageListener != null) {
+            stageListener.stageCompleted(stage, addressPort, outcome, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    void finished() {
+        if (retryWheel != null) {
+            retryWheel.stop();
+        }
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+        if (consumerService != null) {
+            consumerService.shutdown();
+        }
+
+        if (diffClosures && !shutdown) {
+            final PackedLongSet multiAddresses = new PackedLongSet();
+            if (scanMethod == ScanMethod.MULTI_ADDRESS) {
+                addresses.forEach(address -> multiAddresses.add(address.getDecimal()));
+            }
+
+            // Sent after any results still queued for the result threads, as the last changes of the scan.
+            diffSnapshot.closeUnseen(packed -> wasScanned(packed, multiAddresses), packed -> dispatch(() -> changeMethod.accept(
+                    new PortChange(new IPv4AddressPort(packed >>> 16, (int) (packed & 0xFFFF)), PortChange.Type.CLOSED))));
+        }
+
+        if (resultStage != null) {
+            resultStage.shutdown();
+        }
+    }
+
+    @Override
+    void awaitResults() throws InterruptedException {
+        if (resultStage != null) {
+            resultStage.await();
+        }
+    }
+
+    @Override
+    boolean isConsumingFinished() {
+        return super.isConsumingFinished() && (resultStage == null || resultStage.isTerminated());
+    }
+
+    /**
+     * @param packed         packed address:port
+     * @param multiAddresses address decimals when scanning {@link ScanMethod#MULTI_ADDRESS}
+     * @return whether the address:port is one this scan produced
+     */
+    private boolean wasScanned(final long packed, final PackedLongSet multiAddresses) {
+        final long decimal = packed >>> 16;
+        if (!ports.contains((int) (packed & 0xFFFF))) {
             return false;
         }
+
+        switch (scanMethod) {
+            case SINGLE_ADDRESS:
+                return decimal == startAddress.getDecimal();
+            case RANGE_ADDRESS:
+                return decimal >= addressBlock.getFirstAddress().getDecimal()
+                        && decimal < addressBlock.getLastAddress().getDecimal();
+            case MULTI_ADDRESS:
+                return multiAddresses.contains(decimal);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks an address:port with the {@link #activeProber}, unless its outcome is already known.
+     */
+    private PortStatus probe(final IPv4AddressPort addressPort) {
+        PortStatus status = knownStatus(addressPort);
+        if (status != null) {
+            return status;
+        }
+
+        final long dispatch = stageStart();
+        acquireRate();
+
+        final int timeout = live.getCheckTimeout();
+        final long start;
+        if (concurrencyController != null) {
+            if (!concurrencyController.acquire()) {
+                // Interrupted, such as by the watchdog, so give up without an answer.
+                return PortStatus.FILTERED;
+            }
+            start = dispatched(addressPort, dispatch);
+            try {
+                status = activeProber.probe(addressPort, timeout);
+            } finally {
+                concurrencyController.release(status == null || status == PortStatus.FILTERED);
+            }
+        } else {
+            start = dispatched(addressPort, dispatch);
+            status = activeProber.probe(addressPort, timeout);
+        }
+        return probed(addressPort, status, start);
+    }
+
+    /**
+     * Starts a check with the {@link AsyncProber} and completes the address:port from its callback,
+     * waiting only while the window of probes in flight is full.
+     */
+    private void probeAsync(final IPv4AddressPort addressPort) {
+        final PortStatus known = knownStatus(addressPort);
+        if (known != null) {
+            releaseHost(addressPort);
+            complete(addressPort, known);
+            return;
+        }
+
+        final long dispatch = stageStart();
+        acquireRate();
+        if (concurrencyController != null) {
+            if (!concurrencyController.acquire()) {
+                releaseHost(addressPort);
+                complete(addressPort, PortStatus.FILTERED);
+                return;
+            }
+        } else {
+            asyncWindow.acquireUninterruptibly();
+        }
+        pendingProbes.incrementAndGet();
+
+        CompletableFuture<PortStatus> future;
+        try {
+            future = ((AsyncProber) activeProber).probeAsync(addressPort, live.getCheckTimeout());
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        // The connect is under way once probeAsync returns, the rest of the probe is waiting for it to complete.
+        final long start = dispatched(addressPort, dispatch);
+
+        final long decimal = addressPort.getiPv4Address().getDecimal();
+        if (firstOpenPerHost) {
+            hostProbes.computeIfAbsent(decimal, key -> ConcurrentHashMap.newKeySet()).add(future);
+        }
+
+        final CompletableFuture<PortStatus> probe = future;
+        probe.whenComplete((result, error) -> {
+            final boolean cancelled = error instanceof CancellationException;
+            final PortStatus status = error != null || result == null ? PortStatus.FILTERED : result;
+            try {
+                if (firstOpenPerHost) {
+                    hostProbes.computeIfPresent(decimal, (key, probes) -> probes.remove(probe) && probes.isEmpty() ? null : probes);
+                }
+                if (concurrencyController != null) {
+                    concurrencyController.release(status == PortStatus.FILTERED && !cancelled);
+                } else {
+                    asyncWindow.release();
+                }
+                releaseHost(addressPort);
+                // Cancelled once the host answered, which complete skips, and not an outcome to keep.
+                complete(addressPort, cancelled ? status : probed(addressPort, status, start));
+            } finally {
+                pendingProbes.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Skips hosts already reported unreachable, then checks the {@link #resultCache}. Retries always probe the network.
+     *
+     * @return null when the address:port has to be probed
+     */
+    private PortStatus knownStatus(final IPv4AddressPort addressPort) {
+        final long decimal = addressPort.getiPv4Address().getDecimal();
+        if (unreachableHosts.contains(decimal)) {
+            return PortStatus.UNREACHABLE;
+        }
+
+        final PortStatus status = resultCache != null && addressPort.getRetries() == 0 ? resultCache.get(addressPort) : null;
+        if (status == PortStatus.UNREACHABLE) {
+            unreachableHosts.add(decimal);
+        }
+        return status;
+    }
+
+    /**
+     * Ends the {@link ScanStage#DISPATCH} stage of a probe.
+     *
+     * @return start time of the {@link ScanStage#PROBE} stage
+     */
+    private long dispatched(final IPv4AddressPort addressPort, final long dispatch) {
+        final long start = stageStart();
+        if (stageListener != null) {
+            stageListener.stageCompleted(ScanStage.DISPATCH, addressPort, null, start - dispatch);
+        }
+        return start;
+    }
+
+    /**
+     * Records the fresh outcome of a probe started at the given time.
+     */
+    private PortStatus probed(final IPv4AddressPort addressPort, final PortStatus status, final long start) {
+        stageEnd(ScanStage.PROBE, addressPort, status, start);
+
+        // Only final outcomes are cached, or the retry would find the time out again.
+        if (resultCache != null && !shouldRetry(addressPort, status)) {
+            resultCache.put(addressPort, status);
+        }
+        if (status == PortStatus.UNREACHABLE) {
+            unreachableHosts.add(addressPort.getiPv4Address().getDecimal());
+        }
+        return status;
+    }
+
+    /**
+     * Interprets why a connect failed.
+     */
+    static PortStatus classify(final IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            return PortStatus.FILTERED;
+        } else if (e instanceof NoRouteToHostException) {
+            return PortStatus.UNREACHABLE;
+        } else if (e instanceof ConnectException) {
+            // Network unreachable is only distinguishable from a refusal by its message.
+            final String message = e.getMessage();
+            if (message != null && message.toLowerCase().contains("unreachable")) {
+                return PortStatus.UNREACHABLE;
+            }
+            return PortStatus.CLOSED;
+        }
+        return PortStatus.FILTERED;
+    }
+
+    @Override
+    long getTotalItems() {
+        if (isSampling()) {
+            // Unknown until the estimate is precise enough.
+            return samplingBudget > 0 && samplingPrecision == 0 ? Math.min(samplingBudget, addressBlock.getSize() * ports.size()) : -1;
+        }
+        final long addressCount = super.getTotalItems();
+        return addressCount < 0 ? -1 : addressCount * ports.size();
     }
 
     @Override
@@ -246,10 +1596,30 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
         return objectQueue.size();
     }
 
+    @Override
+    public long getMaxQueueSize() {
+        if (concurrencyController != null) {
+            return MAX_QUEUE_SIZE_MULTIPLIER * concurrencyController.getWindow();
+        }
+        return super.getMaxQueueSize();
+    }
+
     public boolean isCheckPortOpen() {
         return checkPortOpen;
     }
 
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public Map<Integer, byte[]> getUdpPayloads() {
+        return udpPayloads;
+    }
+
+    public boolean isConsumeAllStatuses() {
+        return consumeAllStatuses;
+    }
+
     public int getCheckTimeout() {
         return checkTimeout;
     }
@@ -257,4 +1627,179 @@ public class IPv4BlockPortScan extends BlockScan<IPv4BlockPortScan> {
     public Collection<Integer> getPorts() {
         return ports;
     }
+
+    public SourceAddressPool getSourceAddressPool() {
+        return sourceAddressPool;
+    }
+
+    public boolean isAbortiveClose() {
+        return abortiveClose;
+    }
+
+    public boolean isReuseAddress() {
+        return reuseAddress;
+    }
+
+    public ReverseDnsResolver getReverseDns() {
+        return reverseDns;
+    }
+
+    public TlsInspector getTlsInspector() {
+        return tlsInspector;
+    }
+
+    public Set<Integer> getTlsPorts() {
+        return Collections.unmodifiableSet(tlsPorts);
+    }
+
+    public IPv4PrefixTable<String> getTagTable() {
+        return tagTable;
+    }
+
+    public HttpFingerprinter getHttpFingerprinter() {
+        return httpFingerprinter;
+    }
+
+    public Set<Integer> getHttpPorts() {
+        return Collections.unmodifiableSet(httpPorts);
+    }
+
+    public Prober getProber() {
+        return prober;
+    }
+
+    public ConcurrencyController getConcurrencyController() {
+        return concurrencyController;
+    }
+
+    public ProbeCache getResultCache() {
+        return resultCache;
+    }
+
+    public ScanSnapshot getDiffSnapshot() {
+        return diffSnapshot;
+    }
+
+    public Consumer<HostResult> getHostResultMethod() {
+        return hostResultMethod;
+    }
+
+    public int getHostInterleave() {
+        return hostInterleave;
+    }
+
+    public int getMaxProbesPerHost() {
+        return maxProbesPerHost;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public ScanStageListener getStageListener() {
+        return stageListener;
+    }
+
+    public int getResultThreadCount() {
+        return resultThreadCount;
+    }
+
+    public int getResultQueueSize() {
+        return resultQueueSize;
+    }
+
+    public ResultBackpressure getResultBackpressure() {
+        return resultBackpressure;
+    }
+
+    public boolean isFirstOpenPerHost() {
+        return firstOpenPerHost;
+    }
+
+    public long getResultLimit() {
+        return resultLimit;
+    }
+
+    public double getSamplingPrecision() {
+        return samplingPrecision;
+    }
+
+    public long getSamplingBudget() {
+        return samplingBudget;
+    }
+
+    /**
+     * @return estimate from the address:ports sampled so far, final once the scan is done
+     */
+    public SampleEstimate getSampleEstimate() {
+        return new SampleEstimate(addressBlock.getSize() * ports.size(), sampled.sum(), sampledOpen.sum());
+    }
+
+    public long getWatchdogDeadline() {
+        return watchdogDeadline;
+    }
+
+    public int getMaxRequeues() {
+        return maxRequeues;
+    }
+
+    /**
+     * @return probe threads replaced by the watchdog for being stuck
+     */
+    public long getAbandonedThreads() {
+        return watchdog != null ? watchdog.getAbandonedCount() : 0;
+    }
+
+    public int getReorderBufferSize() {
+        return reorderBufferSize;
+    }
+
+    /**
+     * @return results discarded under {@link ResultBackpressure#DROP}
+     */
+    public long getDroppedResults() {
+        return resultStage != null ? resultStage.getDropped() : 0;
+    }
+
+    /**
+     * Permits for asynchronous probes in flight, resizable while probes hold them.
+     */
+    private static class Window extends Semaphore {
+
+        Window(final int permits) {
+            super(permits);
+        }
+
+        /**
+         * Shrinking takes effect as probes in flight return their permits.
+         */
+        void resize(final int difference) {
+            if (difference > 0) {
+                release(difference);
+            } else if (difference < 0) {
+                reducePermits(-difference);
+            }
+        }
+    }
+
+    /**
+     * An interleaved host and its ports not yet offered.
+     */
+    private static class HostPorts {
+
+        private final IPv4Address address;
+        private final Iterator<Integer> ports;
+        private final int portCount;
+        private int offered;
+
+        HostPorts(final IPv4Address address, final List<Integer> ports) {
+            this.address = address;
+            this.ports = ports.iterator();
+            this.portCount = ports.size();
+        }
+    }
 }
@@ -51,6 +51,13 @@ public class IPv4BlockScan extends BlockScan<IPv4BlockScan> {
         super(addresses);
     }
 
+    /**
+     * Scan addresses as they are read, without holding them all in memory.
+     */
+    public IPv4BlockScan(final Iterator<IPv4Address> addressStream) {
+        super(addressStream);
+    }
+
     public IPv4BlockScan setConsumingMethod(final Consumer<IPv4Address> consumingMethod) {
         this.consumingMethod = consumingMethod;
         return this;
@@ -58,16 +65,23 @@ public class IPv4BlockScan extends BlockScan<IPv4BlockScan> {
 
     @Override
     public IPv4BlockScan execute() {
-        Objects.requireNonNull(consumingMethod);
+        prepare();
 
         producer.submitAndShutdown(this::producer);
 
         consumers = new ExecutorGroup(threadCount);
         consumers.submitAndShutdown(this::consumer);
 
+        startProgressReporter();
+
         return this;
     }
 
+    @Override
+    void prepare() {
+        Objects.requireNonNull(consumingMethod);
+    }
+
     @Override
     void producer() {
         switch (scanMethod) {
@@ -94,6 +108,12 @@ public class IPv4BlockScan extends BlockScan<IPv4BlockScan> {
                 }
                 break;
 
+            case STREAM_ADDRESS:
+                while (addressStream.hasNext() && !shutdown) {
+                    waitAndOfferToQueue(objectQueue, addressStream.next());
+                }
+                break;
+
             case ENDLESS_DECREASE:
             case ENDLESS_INCREASE:
                 IPv4Address address3 = startAddress;
@@ -116,22 +136,31 @@ public class IPv4BlockScan extends BlockScan<IPv4BlockScan> {
     void consumer() {
         final String threadId = UUID.randomUUID().toString();
         while (producer.isStillWorking() || !objectQueue.isEmpty()) {
-            final IPv4Address address = objectQueue.poll();
-
-            if (address != null) {
-                updateThreadTime(threadId);
-                consumingMethod.accept(address);
-            }
+            final boolean consumed = consumeNext(threadId);
 
             if (shutdown) {
                 break;
             }
 
             // Without delay, would freeze JavaFX UI despite being on a separate thread.
-            sleep(2);
+            pause(!consumed);
         }
     }
 
+    @Override
+    boolean consumeNext(final String threadId) {
+        final IPv4Address address = objectQueue.poll();
+        if (address == null) {
+            return false;
+        }
+
+        updateThreadTime(threadId);
+        completedItems.increment();
+        acquireRate();
+        consumingMethod.accept(address);
+        return true;
+    }
+
     @Override
     public long getQueueSize() {
         return objectQueue.size();
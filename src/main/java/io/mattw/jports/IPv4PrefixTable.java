@@ -0,0 +1,242 @@
+package io.mattw.jports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps CIDR prefixes to values and finds the value of the longest prefix containing an address, such as the
+ * network or team owning it, for {@link IPv4BlockPortScan#setTagTable(IPv4PrefixTable)}.
+ * <p>
+ * Prefixes are expanded into a three level 16-8-8 table of ints: 65536 slots for the first 16 bits, then chunks of
+ * 256 slots for the next 8 bits and the last 8 bits, added only below /16 and /24 slots holding longer prefixes.
+ * A lookup is at most three array reads and does not allocate. Equal values are stored once.
+ * <p>
+ * Lookups may run from any number of threads once the table is filled, but not while prefixes are still being added.
+ */
+public class IPv4PrefixTable<T> {
+
+    private static final int ROOT_BITS = 16;
+    private static final int CHUNK = 256;
+
+    /**
+     * Slots hold 0 for no prefix, the value number for a prefix, or the negated chunk number + 1 of the next level.
+     */
+    private final int[] root = new int[1 << ROOT_BITS];
+    private final byte[] rootLength = new byte[1 << ROOT_BITS];
+    private final Level middle = new Level();
+    private final Level last = new Level();
+
+    private Object[] values = new Object[16];
+    private final Map<T, Integer> valueNumbers = new HashMap<>();
+    private int prefixCount = 0;
+
+    /**
+     * Reads prefixes with their value, one per line as {@code 10.0.0.0/8 team-a}. The value is the rest of the line
+     * after whitespace or a comma. An address without a length is a /32, blank lines and lines starting with # are
+     * skipped.
+     *
+     * @throws IllegalArgumentException when a line is not a prefix, with its line number
+     */
+    public static IPv4PrefixTable<String> load(final Path path) throws IOException {
+        final IPv4PrefixTable<String> table = new IPv4PrefixTable<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                final String[] parts = line.split("[\\s,]+", 2);
+                try {
+                    table.put(parts[0], parts.length > 1 ? parts[1].trim() : "");
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid prefix on line " + number + ": " + line, e);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param prefix x.x.x.x/y, or x.x.x.x for a single address
+     */
+    public IPv4PrefixTable<T> put(final String prefix, final T value) {
+        final String[] parts = prefix.split("[/\\\\]", 2);
+        final int length;
+        try {
+            length = parts.length > 1 ? Integer.parseInt(parts[1]) : 32;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value did not follow a valid CIDR notation.");
+        }
+        return put(IPv4Address.convertIPv4ToDecimal(parts[0]), length, value);
+    }
+
+    /**
+     * @param block a valid CIDR block
+     */
+    public IPv4PrefixTable<T> put(final IPv4AddressBlock block, final T value) {
+        if (!block.isValidCIDR()) {
+            throw new IllegalArgumentException("Block is not a CIDR prefix: " + block.getRangeNotation());
+        }
+        return put(block.getFirstAddress().getDecimal(), block.getCidrLength(), value);
+    }
+
+    /**
+     * Adds a prefix, replacing the value of the same prefix if added before. Bits past the length are ignored.
+     *
+     * @param network address decimal
+     * @param length  0-32
+     */
+    public IPv4PrefixTable<T> put(final long network, final int length, final T value) {
+        if (length < 0 || length > 32) {
+            throw new IllegalArgumentException("Prefix length should be 0-32: " + length);
+        }
+
+        final int address = (int) (network & (length == 0 ? 0 : -1L << (32 - length)));
+        final int number = number(value);
+        prefixCount++;
+
+        if (length <= 16) {
+            final int first = address >>> 16;
+            for (int slot = first; slot < first + (1 << (16 - length)); slot++) {
+                fill(root, rootLength, slot, number, length, middle);
+            }
+            return this;
+        }
+
+        final int middleChunk = child(root, rootLength, address >>> 16, middle);
+        if (length <= 24) {
+            final int first = middleChunk * CHUNK + (address >>> 8 & 0xFF);
+            for (int slot = first; slot < first + (1 << (24 - length)); slot++) {
+                fill(middle.slots, middle.lengths, slot, number, length, last);
+            }
+            return this;
+        }
+
+        final int lastChunk = child(middle.slots, middle.lengths, middleChunk * CHUNK + (address >>> 8 & 0xFF), last);
+        final int first = lastChunk * CHUNK + (address & 0xFF);
+        for (int slot = first; slot < first + (1 << (32 - length)); slot++) {
+            fill(last.slots, last.lengths, slot, number, length, null);
+        }
+        return this;
+    }
+
+    /**
+     * @param decimal address decimal
+     * @return value of the longest prefix containing the address, or null when there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T lookup(final long decimal) {
+        final int number = lookupNumber(decimal);
+        return number == 0 ? null : (T) values[number - 1];
+    }
+
+    public T lookup(final IPv4Address address) {
+        return lookup(address.getDecimal());
+    }
+
+    /**
+     * @return prefixes added, counting replaced ones
+     */
+    public int getPrefixCount() {
+        return prefixCount;
+    }
+
+    /**
+     * @return distinct values stored
+     */
+    public int getValueCount() {
+        return valueNumbers.size();
+    }
+
+    private int lookupNumber(final long decimal) {
+        final int address = (int) decimal;
+        int slot = root[address >>> 16];
+        if (slot < 0) {
+            slot = middle.slots[(-slot - 1) * CHUNK + (address >>> 8 & 0xFF)];
+            if (slot < 0) {
+                slot = last.slots[(-slot - 1) * CHUNK + (address & 0xFF)];
+            }
+        }
+        return slot;
+    }
+
+    private int number(final T value) {
+        final Integer existing = valueNumbers.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int number = valueNumbers.size() + 1;
+        if (number > values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[number - 1] = value;
+        valueNumbers.put(value, number);
+        return number;
+    }
+
+    /**
+     * Sets a slot covered by a prefix unless a longer prefix already holds it, going down into its chunk if it has one.
+     */
+    private void fill(final int[] slots, final byte[] lengths, final int slot, final int number, final int length, final Level next) {
+        if (slots[slot] < 0) {
+            final int first = (-slots[slot] - 1) * CHUNK;
+            final Level below = next == middle ? last : null;
+            for (int i = first; i < first + CHUNK; i++) {
+                fill(next.slots, next.lengths, i, number, length, below);
+            }
+        } else if (lengths[slot] <= length) {
+            slots[slot] = number;
+            lengths[slot] = (byte) length;
+        }
+    }
+
+    /**
+     * @return chunk number below the slot, adding one that starts with the slot's prefix when there is none
+     */
+    private int child(final int[] slots, final byte[] lengths, final int slot, final Level next) {
+        if (slots[slot] < 0) {
+            return -slots[slot] - 1;
+        }
+
+        final int chunk = next.add(slots[slot], lengths[slot]);
+        slots[slot] = -chunk - 1;
+        return chunk;
+    }
+
+    /**
+     * Chunks of 256 slots below the root.
+     */
+    private static class Level {
+
+        private int[] slots = new int[0];
+        private byte[] lengths = new byte[0];
+        private int chunks = 0;
+
+        /**
+         * @return number of the new chunk, every slot holding the given prefix
+         */
+        int add(final int number, final byte length) {
+            if ((chunks + 1) * CHUNK > slots.length) {
+                final int capacity = Math.max(16, chunks * 2) * CHUNK;
+                slots = Arrays.copyOf(slots, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+
+            Arrays.fill(slots, chunks * CHUNK, (chunks + 1) * CHUNK, number);
+            Arrays.fill(lengths, chunks * CHUNK, (chunks + 1) * CHUNK, length);
+            return chunks++;
+        }
+    }
+
+}
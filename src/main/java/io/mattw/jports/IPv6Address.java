@@ -0,0 +1,235 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IPv6 address held as two primitive longs, the upper and lower 64 bits, compared as unsigned values.
+ * <p>
+ * https://en.wikipedia.org/wiki/IPv6_address
+ */
+public class IPv6Address implements Serializable, Comparable<IPv6Address> {
+
+    private final long high;
+    private final long low;
+
+    /**
+     * Interprets an address in full, compressed (::) or IPv4-embedded (::ffff:1.2.3.4) notation.
+     *
+     * @param address e.g. 2001:db8::1
+     */
+    public IPv6Address(final String address) {
+        final long[] parsed = parse(address);
+        this.high = parsed[0];
+        this.low = parsed[1];
+    }
+
+    /**
+     * @param high upper 64 bits
+     * @param low  lower 64 bits
+     */
+    public IPv6Address(final long high, final long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Determines if a string is a valid IPv6 address.
+     *
+     * @return string can be parsed
+     */
+    public static boolean matchesIPv6Pattern(final String string) {
+        try {
+            parse(string);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return upper and lower 64 bits
+     */
+    static long[] parse(final String address) {
+        final int[] groups = new int[8];
+        final String text = address.trim();
+        final int compressed = text.indexOf("::");
+        if (compressed != text.lastIndexOf("::") || text.isEmpty()) {
+            throw new IllegalArgumentException("Value did not follow a valid IPv6 format.");
+        }
+
+        final String[] head = parseGroups(compressed < 0 ? text : text.substring(0, compressed));
+        final String[] tail = compressed < 0 ? new String[0] : parseGroups(text.substring(compressed + 2));
+        final int[] headValues = toGroups(head, compressed < 0);
+        final int[] tailValues = toGroups(tail, true);
+
+        if (compressed < 0 ? headValues.length != 8 : headValues.length + tailValues.length > 7) {
+            throw new IllegalArgumentException("Value did not follow a valid IPv6 format.");
+        }
+        System.arraycopy(headValues, 0, groups, 0, headValues.length);
+        System.arraycopy(tailValues, 0, groups, 8 - tailValues.length, tailValues.length);
+
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 4; i++) {
+            high = high << 16 | groups[i];
+            low = low << 16 | groups[i + 4];
+        }
+        return new long[]{high, low};
+    }
+
+    private static String[] parseGroups(final String part) {
+        return part.isEmpty() ? new String[0] : part.split(":", -1);
+    }
+
+    /**
+     * @param last whether the groups end the address, where an embedded IPv4 address is allowed
+     */
+    private static int[] toGroups(final String[] parts, final boolean last) {
+        final boolean embedded = last && parts.length > 0 && parts[parts.length - 1].contains(".");
+        final int[] groups = new int[parts.length + (embedded ? 1 : 0)];
+        for (int i = 0; i < parts.length; i++) {
+            final String part = parts[i];
+            if (embedded && i == parts.length - 1) {
+                if (!IPv4Address.matchesIPv4Pattern(part)) {
+                    throw new IllegalArgumentException("Value did not follow a valid IPv6 format.");
+                }
+                final long decimal = IPv4Address.convertIPv4ToDecimal(part);
+                groups[i] = (int) (decimal >>> 16 & 0xFFFF);
+                groups[i + 1] = (int) (decimal & 0xFFFF);
+            } else {
+                if (part.isEmpty() || part.length() > 4) {
+                    throw new IllegalArgumentException("Value did not follow a valid IPv6 format.");
+                }
+                try {
+                    groups[i] = Integer.parseInt(part, 16);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Value did not follow a valid IPv6 format.");
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @return compressed notation per RFC 5952, e.g. 2001:db8::1
+     */
+    public static String format(final long high, final long low) {
+        final int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) (high >>> (48 - i * 16) & 0xFFFF);
+            groups[i + 4] = (int) (low >>> (48 - i * 16) & 0xFFFF);
+        }
+
+        // Longest run of at least two zero groups, the first when tied, becomes ::
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            if (groups[i] != 0) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < 8 && groups[end] == 0) {
+                end++;
+            }
+            if (end - i > bestLength) {
+                bestStart = i;
+                bestLength = end - i;
+            }
+            i = end;
+        }
+
+        final StringBuilder text = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                text.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(groups[i]));
+        }
+        return text.toString();
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public String getAddress() {
+        return format(high, low);
+    }
+
+    /**
+     * @return the 16 bytes of the address, most significant first
+     */
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - i * 8));
+            bytes[i + 8] = (byte) (low >>> (56 - i * 8));
+        }
+        return bytes;
+    }
+
+    public InetAddress toInetAddress() {
+        try {
+            return Inet6Address.getByAddress(null, toBytes(), -1);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param distance positive or negative, wraps around at either end
+     */
+    public IPv6Address traverse(final long distance) {
+        final long newLow = low + distance;
+        long newHigh = high;
+        if (distance >= 0 && Long.compareUnsigned(newLow, low) < 0) {
+            newHigh++;
+        } else if (distance < 0 && Long.compareUnsigned(newLow, low) > 0) {
+            newHigh--;
+        }
+        return new IPv6Address(newHigh, newLow);
+    }
+
+    public IPv6Address nextAddress() {
+        return traverse(1);
+    }
+
+    public IPv6Address prevAddress() {
+        return traverse(-1);
+    }
+
+    @Override
+    public int compareTo(final IPv6Address other) {
+        final int compared = Long.compareUnsigned(high, other.high);
+        return compared != 0 ? compared : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof IPv6Address && ((IPv6Address) other).high == high && ((IPv6Address) other).low == low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return getAddress();
+    }
+
+}
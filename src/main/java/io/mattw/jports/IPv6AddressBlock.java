@@ -0,0 +1,98 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+
+/**
+ * Represents an IPv6 prefix in CIDR notation, such as 2001:db8::/64.
+ */
+public class IPv6AddressBlock implements Serializable {
+
+    private final IPv6Address firstAddress;
+    private final IPv6Address lastAddress;
+    private final int prefixLength;
+
+    /**
+     * @param cidrNotation address/prefix length, e.g. 2001:db8::/64
+     */
+    public IPv6AddressBlock(final String cidrNotation) {
+        this(new IPv6Address(cidrNotation.substring(0, slash(cidrNotation))), parseLength(cidrNotation));
+    }
+
+    /**
+     * @param address      any address in the block, bits past the prefix are ignored
+     * @param prefixLength 0-128
+     */
+    public IPv6AddressBlock(final IPv6Address address, final int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 128) {
+            throw new IllegalArgumentException("Prefix length should be 0-128: " + prefixLength);
+        }
+
+        final long highMask = mask(prefixLength);
+        final long lowMask = mask(prefixLength - 64);
+        this.firstAddress = new IPv6Address(address.getHigh() & highMask, address.getLow() & lowMask);
+        this.lastAddress = new IPv6Address(address.getHigh() | ~highMask, address.getLow() | ~lowMask);
+        this.prefixLength = prefixLength;
+    }
+
+    private static int slash(final String cidrNotation) {
+        final int slash = cidrNotation.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Value did not follow a valid CIDR notation.");
+        }
+        return slash;
+    }
+
+    private static int parseLength(final String cidrNotation) {
+        try {
+            return Integer.parseInt(cidrNotation.substring(slash(cidrNotation) + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value did not follow a valid CIDR notation.");
+        }
+    }
+
+    /**
+     * @return the upper bits of 64 set, none when 0 or less
+     */
+    static long mask(final int bits) {
+        return bits <= 0 ? 0 : bits >= 64 ? -1L : -1L << (64 - bits);
+    }
+
+    public IPv6Address getFirstAddress() {
+        return firstAddress;
+    }
+
+    /**
+     * @return the last address in the block, inclusive
+     */
+    public IPv6Address getLastAddress() {
+        return lastAddress;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @return addresses in the block, or -1 when more than fit in a long
+     */
+    public long getSize() {
+        return prefixLength > 65 ? 1L << (128 - prefixLength) : -1;
+    }
+
+    public String getCidrNotation() {
+        return firstAddress.getAddress() + "/" + prefixLength;
+    }
+
+    /**
+     * @return whether address is in the block inclusive
+     */
+    public boolean contains(final IPv6Address address) {
+        return address.compareTo(firstAddress) >= 0 && address.compareTo(lastAddress) <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return getCidrNotation();
+    }
+
+}
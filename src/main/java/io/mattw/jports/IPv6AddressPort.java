@@ -0,0 +1,51 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+
+public class IPv6AddressPort implements Serializable {
+
+    private IPv6Address iPv6Address;
+    private int port;
+    private PortStatus status;
+
+    /**
+     * @param iPv6Address arbitrary address
+     * @param port        0-65535
+     */
+    public IPv6AddressPort(final IPv6Address iPv6Address, final int port) {
+        this.iPv6Address = iPv6Address;
+        this.port = Math.abs(port) % 65536;
+    }
+
+    public IPv6Address getiPv6Address() {
+        return iPv6Address;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return [address]:port, e.g. [2001:db8::1]:443
+     */
+    public String getFullAddress() {
+        return "[" + iPv6Address.getAddress() + "]:" + port;
+    }
+
+    /**
+     * @return outcome of the check, null when the port was not checked
+     */
+    public PortStatus getStatus() {
+        return status;
+    }
+
+    void setStatus(final PortStatus status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return getFullAddress();
+    }
+
+}
@@ -0,0 +1,281 @@
+package io.mattw.jports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Targets for an {@link IPv6PortScan}, as the IPv6 space is far too large to walk. Each entry is a pattern
+ * that expands to addresses, one per line when loaded from a file:
+ * <pre>
+ * 2001:db8::1                           a single address
+ * 2001:db8::/120                        every address in a prefix
+ * 2001:db8::[1-ff]                      hex ranges within groups, e.g. the low byte
+ * 2001:db8:0:1::[0-3]:[100-1ff]         ranges in several groups are combined
+ * 2001:db8::/64 eui64 00:1a:2b:*:*:[00-0f]   EUI-64 interface ids of MAC addresses, * for any byte
+ * </pre>
+ * Blank lines and lines starting with # are skipped. A range within a group has to split into whole bytes,
+ * such as [1-ff] or [100-3ff]. Patterns are kept as a range per byte, so a {@link Cursor} walks them without
+ * allocating.
+ */
+public class IPv6Hitlist {
+
+    private static final Pattern RANGE = Pattern.compile("\\[([0-9a-fA-F]{1,4})-([0-9a-fA-F]{1,4})]");
+    private static final Pattern MAC_RANGE = Pattern.compile("\\[([0-9a-fA-F]{1,2})-([0-9a-fA-F]{1,2})]");
+
+    /**
+     * Lowest and highest value of each of the 16 bytes, per pattern.
+     */
+    private final List<int[][]> patterns = new ArrayList<>();
+
+    /**
+     * Reads patterns, one per line.
+     *
+     * @throws IllegalArgumentException when a line is not a pattern, with its line number
+     */
+    public static IPv6Hitlist load(final Path path) throws IOException {
+        final IPv6Hitlist hitlist = new IPv6Hitlist();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                try {
+                    hitlist.add(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid pattern on line " + number + ": " + line, e);
+                }
+            }
+        }
+        return hitlist;
+    }
+
+    /**
+     * @param pattern any of the forms described above, blank or # comments are ignored
+     */
+    public IPv6Hitlist add(final String pattern) {
+        final String line = pattern.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return this;
+        }
+
+        final String[] parts = line.split("\\s+");
+        if (parts.length == 3 && parts[1].equalsIgnoreCase("eui64")) {
+            return addEui64(new IPv6AddressBlock(parts[0]), parts[2]);
+        } else if (parts.length != 1) {
+            throw new IllegalArgumentException("Value did not follow a valid hitlist pattern.");
+        }
+
+        if (line.contains("/")) {
+            return add(new IPv6AddressBlock(line));
+        }
+        if (!line.contains("[")) {
+            return add(new IPv6Address(line));
+        }
+
+        final long[] min = IPv6Address.parse(RANGE.matcher(line).replaceAll("$1"));
+        final long[] max = IPv6Address.parse(RANGE.matcher(line).replaceAll("$2"));
+        final int[][] bytes = new int[2][16];
+        for (int group = 0; group < 8; group++) {
+            final int low = group(min, group);
+            final int high = group(max, group);
+            if (low > high) {
+                throw new IllegalArgumentException("Range should go from low to high: " + line);
+            }
+            if (low >> 8 != high >> 8 && ((low & 0xFF) != 0 || (high & 0xFF) != 0xFF)) {
+                throw new IllegalArgumentException("Range does not split into whole bytes: " + line);
+            }
+            bytes[0][group * 2] = low >> 8;
+            bytes[1][group * 2] = high >> 8;
+            bytes[0][group * 2 + 1] = low & 0xFF;
+            bytes[1][group * 2 + 1] = high & 0xFF;
+        }
+        patterns.add(bytes);
+        return this;
+    }
+
+    public IPv6Hitlist add(final IPv6Address address) {
+        patterns.add(new int[][]{bytes(address), bytes(address)});
+        return this;
+    }
+
+    public IPv6Hitlist add(final IPv6AddressBlock block) {
+        // The host bits of a prefix are the low bits of each byte, so per byte ranges cover it exactly.
+        patterns.add(new int[][]{bytes(block.getFirstAddress()), bytes(block.getLastAddress())});
+        return this;
+    }
+
+    /**
+     * @param prefix /64 the interface ids are in
+     * @param mac    six bytes separated by : or -, each hex, a [lo-hi] hex range or * for any
+     */
+    private IPv6Hitlist addEui64(final IPv6AddressBlock prefix, final String mac) {
+        if (prefix.getPrefixLength() != 64) {
+            throw new IllegalArgumentException("EUI-64 addresses need a /64 prefix: " + prefix);
+        }
+
+        final String[] parts = mac.split("[:-](?![0-9a-fA-F]*])");
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("Value did not follow a valid MAC pattern: " + mac);
+        }
+        final int[][] macBytes = new int[2][6];
+        for (int i = 0; i < 6; i++) {
+            final Matcher range = MAC_RANGE.matcher(parts[i]);
+            try {
+                if (parts[i].equals("*")) {
+                    macBytes[1][i] = 0xFF;
+                } else if (range.matches()) {
+                    macBytes[0][i] = Integer.parseInt(range.group(1), 16);
+                    macBytes[1][i] = Integer.parseInt(range.group(2), 16);
+                } else if (parts[i].length() <= 2) {
+                    macBytes[0][i] = macBytes[1][i] = Integer.parseInt(parts[i], 16);
+                } else {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Value did not follow a valid MAC pattern: " + mac);
+            }
+            if (macBytes[0][i] > macBytes[1][i]) {
+                throw new IllegalArgumentException("Range should go from low to high: " + mac);
+            }
+        }
+        // Flipping the universal/local bit keeps a range contiguous only when it is a single value or every value.
+        if (macBytes[0][0] != macBytes[1][0] && (macBytes[0][0] != 0 || macBytes[1][0] != 0xFF)) {
+            throw new IllegalArgumentException("First MAC byte should be a single value or *: " + mac);
+        }
+
+        final int[][] bytes = {bytes(prefix.getFirstAddress()), bytes(prefix.getFirstAddress())};
+        final int[] macIndex = {0, 1, 2, -1, -1, 3, 4, 5};
+        for (int i = 0; i < 8; i++) {
+            for (int bound = 0; bound < 2; bound++) {
+                if (macIndex[i] < 0) {
+                    bytes[bound][8 + i] = i == 3 ? 0xFF : 0xFE;
+                } else {
+                    bytes[bound][8 + i] = macBytes[bound][macIndex[i]] ^ (i == 0 && macBytes[0][0] == macBytes[1][0] ? 0x02 : 0);
+                }
+            }
+        }
+        patterns.add(bytes);
+        return this;
+    }
+
+    private static int group(final long[] address, final int group) {
+        return (int) (address[group / 4] >>> (48 - group % 4 * 16) & 0xFFFF);
+    }
+
+    private static int[] bytes(final IPv6Address address) {
+        final int[] bytes = new int[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (int) (address.getHigh() >>> (56 - i * 8) & 0xFF);
+            bytes[i + 8] = (int) (address.getLow() >>> (56 - i * 8) & 0xFF);
+        }
+        return bytes;
+    }
+
+    public int getPatternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * @return addresses the patterns expand to, Long.MAX_VALUE when more, counting overlaps twice
+     */
+    public long getSize() {
+        long total = 0;
+        for (int[][] pattern : patterns) {
+            long size = 1;
+            for (int i = 0; i < 16; i++) {
+                final long values = pattern[1][i] - pattern[0][i] + 1;
+                size = size > Long.MAX_VALUE / values ? Long.MAX_VALUE : size * values;
+            }
+            total = total > Long.MAX_VALUE - size ? Long.MAX_VALUE : total + size;
+        }
+        return total;
+    }
+
+    /**
+     * @return a new cursor at the start, each cursor walks the patterns once
+     */
+    public Cursor cursor() {
+        return new Cursor(patterns);
+    }
+
+    /**
+     * Walks the addresses of a hitlist in pattern order, the last byte changing fastest. Reuses its state
+     * between addresses, nothing is allocated after it is created.
+     */
+    public static class Cursor {
+
+        private final List<int[][]> patterns;
+        private final int[] current = new int[16];
+        private int pattern = -1;
+        private long high;
+        private long low;
+
+        Cursor(final List<int[][]> patterns) {
+            this.patterns = patterns;
+        }
+
+        /**
+         * Moves to the next address.
+         *
+         * @return false once every address has been visited
+         */
+        public boolean next() {
+            if (pattern >= 0 && pattern < patterns.size()) {
+                final int[][] bounds = patterns.get(pattern);
+                for (int i = 15; i >= 0; i--) {
+                    if (current[i] < bounds[1][i]) {
+                        current[i]++;
+                        update();
+                        return true;
+                    }
+                    current[i] = bounds[0][i];
+                }
+            }
+
+            if (++pattern >= patterns.size()) {
+                pattern = patterns.size();
+                return false;
+            }
+            System.arraycopy(patterns.get(pattern)[0], 0, current, 0, 16);
+            update();
+            return true;
+        }
+
+        private void update() {
+            long newHigh = 0;
+            long newLow = 0;
+            for (int i = 0; i < 8; i++) {
+                newHigh = newHigh << 8 | current[i];
+                newLow = newLow << 8 | current[i + 8];
+            }
+            high = newHigh;
+            low = newLow;
+        }
+
+        /**
+         * @return upper 64 bits of the current address
+         */
+        public long getHigh() {
+            return high;
+        }
+
+        /**
+         * @return lower 64 bits of the current address
+         */
+        public long getLow() {
+            return low;
+        }
+
+        public IPv6Address getAddress() {
+            return new IPv6Address(high, low);
+        }
+    }
+
+}
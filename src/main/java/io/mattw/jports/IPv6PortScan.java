@@ -0,0 +1,204 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Configure and start a multithreaded TCP port scan of IPv6 targets from an {@link IPv6Hitlist}.
+ * <p>
+ * Targets are walked by a {@link IPv6Hitlist.Cursor} and queued as primitives in a bounded ring, so producing
+ * and queueing address:ports does not allocate. Objects are only created to connect and for results sent on.
+ */
+public class IPv6PortScan extends BlockScan<IPv6PortScan> {
+
+    private final IPv6Hitlist hitlist;
+    private int[] ports;
+    private int checkTimeout = 300;
+    private boolean consumeAllStatuses = false;
+    private Consumer<IPv6AddressPort> consumingMethod;
+
+    private TargetRing ring;
+
+    /**
+     * Scan the addresses a hitlist expands to.
+     */
+    public IPv6PortScan(final IPv6Hitlist hitlist) {
+        this.hitlist = hitlist;
+    }
+
+    /**
+     * Scan every address of a prefix, only sensible for small prefixes such as a /120.
+     */
+    public IPv6PortScan(final IPv6AddressBlock block) {
+        this(new IPv6Hitlist().add(block));
+    }
+
+    /**
+     * Scan a list of addresses or hitlist patterns.
+     */
+    public IPv6PortScan(final List<String> patterns) {
+        this(new IPv6Hitlist());
+        for (String pattern : patterns) {
+            hitlist.add(pattern);
+        }
+    }
+
+    public IPv6PortScan setPorts(final Collection<Integer> ports) {
+        this.ports = ports.stream().mapToInt(port -> Math.abs(port) % 65536).toArray();
+        return this;
+    }
+
+    /**
+     * @param checkTimeout connect timeout in millis, default 300
+     */
+    public IPv6PortScan setCheckTimeout(final int checkTimeout) {
+        this.checkTimeout = checkTimeout;
+        return this;
+    }
+
+    /**
+     * @param consumeAllStatuses send on every checked address:port with its status, not only open ones
+     */
+    public IPv6PortScan setConsumeAllStatuses(final boolean consumeAllStatuses) {
+        this.consumeAllStatuses = consumeAllStatuses;
+        return this;
+    }
+
+    public IPv6PortScan setConsumingMethod(final Consumer<IPv6AddressPort> consumingMethod) {
+        this.consumingMethod = consumingMethod;
+        return this;
+    }
+
+    @Override
+    public IPv6PortScan execute() {
+        prepare();
+
+        producer.submitAndShutdown(this::producer);
+
+        consumers = new ExecutorGroup(threadCount);
+        consumers.submitAndShutdown(this::consumer);
+
+        startProgressReporter();
+
+        return this;
+    }
+
+    @Override
+    void prepare() {
+        Objects.requireNonNull(ports);
+        Objects.requireNonNull(consumingMethod);
+        if (ports.length == 0) {
+            throw new IllegalStateException("Ports list should not be empty.");
+        }
+
+        ring = new TargetRing((int) Math.min(Integer.MAX_VALUE, getMaxQueueSize()));
+    }
+
+    @Override
+    void producer() {
+        final IPv6Hitlist.Cursor cursor = hitlist.cursor();
+        while (cursor.next() && !shutdown) {
+            for (int port : ports) {
+                while (!ring.offer(cursor.getHigh(), cursor.getLow(), port)) {
+                    if (shutdown) {
+                        return;
+                    }
+                    pause(true);
+                }
+            }
+
+            // Without delay, would freeze JavaFX UI despite being on a separate thread.
+            pause(false);
+        }
+    }
+
+    @Override
+    void consumer() {
+        final long[] target = new long[3];
+        final byte[] address = new byte[16];
+        while (producer.isStillWorking() || ring.size() > 0) {
+            final boolean consumed = consume(target, address);
+
+            if (shutdown) {
+                break;
+            }
+
+            // Without delay, would freeze JavaFX UI despite being on a separate thread.
+            pause(!consumed);
+        }
+    }
+
+    @Override
+    boolean consumeNext(final String threadId) {
+        return consume(new long[3], new byte[16]);
+    }
+
+    /**
+     * @param target  reused for the polled address:port
+     * @param address reused for the address bytes
+     */
+    private boolean consume(final long[] target, final byte[] address) {
+        if (!ring.poll(target)) {
+            return false;
+        }
+
+        completedItems.increment();
+        acquireRate();
+        final PortStatus status = probe(target[0], target[1], (int) target[2], address);
+        if (consumeAllStatuses || status == PortStatus.OPEN) {
+            final IPv6AddressPort addressPort = new IPv6AddressPort(new IPv6Address(target[0], target[1]), (int) target[2]);
+            addressPort.setStatus(status);
+            consumingMethod.accept(addressPort);
+        }
+        return true;
+    }
+
+    private PortStatus probe(final long high, final long low, final int port, final byte[] address) {
+        for (int i = 0; i < 8; i++) {
+            address[i] = (byte) (high >>> (56 - i * 8));
+            address[i + 8] = (byte) (low >>> (56 - i * 8));
+        }
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(Inet6Address.getByAddress(null, address, -1), port), checkTimeout);
+            return PortStatus.OPEN;
+        } catch (IOException e) {
+            return IPv4BlockPortScan.classify(e);
+        }
+    }
+
+    @Override
+    long getTotalItems() {
+        final long size = hitlist.getSize();
+        return size > Long.MAX_VALUE / ports.length ? -1 : size * ports.length;
+    }
+
+    @Override
+    public long getQueueSize() {
+        return ring != null ? ring.size() : 0;
+    }
+
+    @Override
+    boolean supportsRuntime() {
+        return false;
+    }
+
+    public IPv6Hitlist getHitlist() {
+        return hitlist;
+    }
+
+    public int getCheckTimeout() {
+        return checkTimeout;
+    }
+
+    public boolean isConsumeAllStatuses() {
+        return consumeAllStatuses;
+    }
+
+}
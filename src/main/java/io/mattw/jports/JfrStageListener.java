@@ -0,0 +1,105 @@
+package io.mattw.jports;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ScanStageListener} that commits each stage as a Java Flight Recorder event named {@code io.mattw.jports.ScanStage},
+ * with the stage, address, port, outcome and elapsed time as fields.
+ * <p>
+ * The library targets Java 8 where the {@code jdk.jfr} API is not available to compile against, so the event type is
+ * defined at runtime through {@code jdk.jfr.EventFactory}. On runtimes without it this listener does nothing.
+ * While no recording has the event enabled, each call only checks that flag.
+ */
+public class JfrStageListener implements ScanStageListener {
+
+    private static final String EVENT_NAME = "io.mattw.jports.ScanStage";
+
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle SET;
+    private static final MethodHandle COMMIT;
+
+    static {
+        MethodHandle isEnabled = null;
+        MethodHandle newEvent = null;
+        MethodHandle set = null;
+        MethodHandle commit = null;
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            final Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> eventType = Class.forName("jdk.jfr.EventType");
+            final Class<?> event = Class.forName("jdk.jfr.Event");
+
+            final MethodHandle annotation = lookup.findConstructor(annotationElement,
+                    MethodType.methodType(void.class, Class.class, Object.class));
+            final MethodHandle field = lookup.findConstructor(valueDescriptor,
+                    MethodType.methodType(void.class, Class.class, String.class, List.class));
+
+            final String[] category = {"jports"};
+            final List<Object> eventAnnotations = Arrays.asList(
+                    annotation.invoke(Class.forName("jdk.jfr.Name"), EVENT_NAME),
+                    annotation.invoke(Class.forName("jdk.jfr.Label"), "Scan Stage"),
+                    annotation.invoke(Class.forName("jdk.jfr.Category"), category));
+            final List<Object> fields = Arrays.asList(
+                    field.invoke(String.class, "stage", Collections.emptyList()),
+                    field.invoke(String.class, "address", Collections.emptyList()),
+                    field.invoke(int.class, "port", Collections.emptyList()),
+                    field.invoke(String.class, "outcome", Collections.emptyList()),
+                    field.invoke(long.class, "elapsed", Collections.singletonList(
+                            annotation.invoke(Class.forName("jdk.jfr.Timespan"), "NANOSECONDS"))));
+
+            final Object factory = lookup.findStatic(eventFactory, "create",
+                    MethodType.methodType(eventFactory, List.class, List.class))
+                    .invoke(eventAnnotations, fields);
+            final Object type = lookup.findVirtual(eventFactory, "getEventType", MethodType.methodType(eventType)).invoke(factory);
+
+            isEnabled = lookup.findVirtual(eventType, "isEnabled", MethodType.methodType(boolean.class)).bindTo(type);
+            newEvent = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event)).bindTo(factory);
+            set = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class));
+            commit = lookup.findVirtual(event, "commit", MethodType.methodType(void.class));
+        } catch (Throwable e) {
+            isEnabled = null;
+        }
+
+        IS_ENABLED = isEnabled;
+        NEW_EVENT = newEvent;
+        SET = set;
+        COMMIT = commit;
+    }
+
+    /**
+     * @return whether the runtime supports Flight Recorder events, otherwise nothing is recorded
+     */
+    public static boolean isSupported() {
+        return IS_ENABLED != null;
+    }
+
+    @Override
+    public void stageCompleted(final ScanStage stage, final IPv4AddressPort addressPort, final PortStatus outcome, final long nanos) {
+        if (IS_ENABLED == null) {
+            return;
+        }
+
+        try {
+            if (!(boolean) IS_ENABLED.invoke()) {
+                return;
+            }
+
+            final Object event = NEW_EVENT.invoke();
+            SET.invoke(event, 0, stage.name());
+            SET.invoke(event, 1, addressPort.getiPv4Address().getAddress());
+            SET.invoke(event, 2, addressPort.getPort());
+            SET.invoke(event, 3, outcome != null ? outcome.name() : null);
+            SET.invoke(event, 4, nanos);
+            COMMIT.invoke(event);
+        } catch (Throwable ignored) {}
+    }
+
+}
@@ -0,0 +1,74 @@
+package io.mattw.jports;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of an {@link IPv4BlockPortScan} that can change while it runs. Never modified once made, a change swaps
+ * in a new instance, so each read sees one consistent set of values.
+ */
+class LiveSettings {
+
+    private final int threadCount;
+    private final int checkTimeout;
+    private final List<Integer> ports;
+    private final BitSet portSet = new BitSet(65536);
+    private final List<String> exclusions;
+    private final IPv4PrefixTable<Boolean> excluded;
+
+    /**
+     * @param excluded table of the exclusions, or null to build it
+     */
+    LiveSettings(final int threadCount, final int checkTimeout, final Collection<Integer> ports,
+                 final Collection<String> exclusions, final IPv4PrefixTable<Boolean> excluded) {
+        this.threadCount = threadCount;
+        this.checkTimeout = checkTimeout;
+        this.ports = Collections.unmodifiableList(new ArrayList<>(ports));
+        this.ports.forEach(portSet::set);
+        this.exclusions = Collections.unmodifiableList(new ArrayList<>(exclusions));
+        if (excluded != null || this.exclusions.isEmpty()) {
+            this.excluded = excluded;
+        } else {
+            this.excluded = new IPv4PrefixTable<>();
+            this.exclusions.forEach(prefix -> this.excluded.put(prefix, true));
+        }
+    }
+
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    int getCheckTimeout() {
+        return checkTimeout;
+    }
+
+    List<Integer> getPorts() {
+        return ports;
+    }
+
+    /**
+     * @return CIDR notations of the excluded prefixes
+     */
+    List<String> getExclusions() {
+        return exclusions;
+    }
+
+    IPv4PrefixTable<Boolean> getExcluded() {
+        return excluded;
+    }
+
+    boolean isExcluded(final long decimal) {
+        return excluded != null && excluded.lookup(decimal) != null;
+    }
+
+    /**
+     * @return whether the address:port is no longer part of the scan, its port removed or its address excluded
+     */
+    boolean isWithdrawn(final IPv4AddressPort addressPort) {
+        return !portSet.get(addressPort.getPort()) || isExcluded(addressPort.getiPv4Address().getDecimal());
+    }
+
+}
@@ -0,0 +1,172 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single thread running many {@link NioSession}s over non-blocking channels with one {@link Selector}.
+ * <p>
+ * At most a set number of sessions run at once, others wait in submission order. Each session has
+ * its timeout from the moment it starts connecting. The thread is a daemon started on first use.
+ */
+class NioEngine implements AutoCloseable {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Queue<NioSession> submitted = new ConcurrentLinkedQueue<>();
+    private final List<NioSession> active = new ArrayList<>();
+
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean stopped = false;
+
+    /**
+     * @param name          thread name
+     * @param maxConcurrent sessions running at once
+     */
+    NioEngine(final String name, final int maxConcurrent) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    void submit(final NioSession session) {
+        if (stopped) {
+            session.failed(new IOException("Engine has been closed."));
+            return;
+        }
+
+        submitted.add(session);
+        synchronized (this) {
+            if (thread == null) {
+                try {
+                    selector = Selector.open();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not open selector.", e);
+                }
+                thread = new Thread(this::run, name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the thread, sessions still running or waiting fail.
+     */
+    @Override
+    public synchronized void close() {
+        stopped = true;
+        if (selector != null) {
+            selector.wakeup();
+        } else {
+            failWaiting();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!stopped) {
+                startWaiting();
+
+                final long now = System.currentTimeMillis();
+                long nextDeadline = now + 1000;
+                for (NioSession session : active) {
+                    nextDeadline = Math.min(nextDeadline, session.deadline);
+                }
+                selector.select(Math.max(1, nextDeadline - now));
+
+                for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext(); ) {
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+                    handle(key);
+                }
+
+                expire();
+            }
+        } catch (IOException e) {
+            // Selector failed, nothing more can run.
+        } finally {
+            for (NioSession session : active) {
+                fail(session, new IOException("Engine has been closed."));
+            }
+            active.clear();
+            failWaiting();
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void startWaiting() {
+        NioSession session;
+        while (active.size() < maxConcurrent && (session = submitted.poll()) != null) {
+            active.add(session);
+            session.deadline = System.currentTimeMillis() + session.timeout;
+            try {
+                session.channel = SocketChannel.open();
+                session.channel.configureBlocking(false);
+                final boolean connected = session.channel.connect(session.target);
+                session.key = session.channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT, session);
+                if (connected) {
+                    session.connected();
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(session, e);
+            }
+        }
+        active.removeIf(waiting -> waiting.closed);
+    }
+
+    private void handle(final SelectionKey key) {
+        final NioSession session = (NioSession) key.attachment();
+        if (session.closed || !key.isValid()) {
+            return;
+        }
+
+        try {
+            if (key.isConnectable()) {
+                session.channel.finishConnect();
+                session.key.interestOps(0);
+                session.connected();
+            } else {
+                session.ready();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(session, e);
+        }
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        for (NioSession session : active) {
+            if (!session.closed && now >= session.deadline) {
+                fail(session, new SocketTimeoutException("Timed out talking to " + session.target));
+            }
+        }
+        active.removeIf(session -> session.closed);
+    }
+
+    private void fail(final NioSession session, final Exception e) {
+        if (!session.closed) {
+            session.close();
+            session.failed(e);
+        }
+    }
+
+    private void failWaiting() {
+        NioSession session;
+        while ((session = submitted.poll()) != null) {
+            session.failed(new IOException("Engine has been closed."));
+        }
+    }
+
+}
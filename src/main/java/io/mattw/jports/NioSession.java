@@ -0,0 +1,64 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One non-blocking TCP exchange run by a {@link NioEngine}. All methods are called on the engine's thread.
+ */
+abstract class NioSession {
+
+    final InetSocketAddress target;
+    final int timeout;
+
+    SocketChannel channel;
+    SelectionKey key;
+    long deadline;
+    boolean closed;
+
+    /**
+     * @param target  address to connect to
+     * @param timeout millis from connecting until the session fails
+     */
+    NioSession(final InetSocketAddress target, final int timeout) {
+        this.target = target;
+        this.timeout = timeout;
+    }
+
+    /**
+     * The channel is connected, start the exchange.
+     */
+    abstract void connected() throws IOException;
+
+    /**
+     * The channel is readable or writable as last asked for with {@link #interest(int)}.
+     */
+    abstract void ready() throws IOException;
+
+    /**
+     * The session failed or timed out, the channel is closed afterwards.
+     */
+    abstract void failed(Exception e);
+
+    void interest(final int ops) {
+        key.interestOps(ops);
+    }
+
+    /**
+     * Ends the session and frees its place in the engine.
+     */
+    void close() {
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+}
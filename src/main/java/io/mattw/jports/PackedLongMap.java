@@ -0,0 +1,150 @@
+package io.mattw.jports;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing map from non-negative longs, such as packed address:port values, to longs.
+ * <p>
+ * The primitive counterpart of {@link PackedLongSet} for tracking a value per target without boxing.
+ * Not thread safe.
+ */
+class PackedLongMap {
+
+    static final long EMPTY = -1L;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    PackedLongMap() {
+        this(16);
+    }
+
+    PackedLongMap(final int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @return the previous value, or {@link #EMPTY} if absent
+     */
+    long put(final long key, final long value) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                final long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return the value, or {@link #EMPTY} if absent
+     */
+    long get(final long key) {
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return the removed value, or {@link #EMPTY} if absent
+     */
+    long remove(final long key) {
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return EMPTY;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final long removed = values[slot];
+
+        // Shift following entries back so lookups never stop early at the freed slot.
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            final int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = EMPTY;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes every entry whose value is below the limit, passing each removed key to the action.
+     * Keys are collected first so removals cannot disturb the walk.
+     *
+     * @return number of entries removed
+     */
+    int removeBelow(final long limit, final LongConsumer action) {
+        long[] expired = null;
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] < limit) {
+                if (expired == null) {
+                    expired = new long[Math.min(size, 64)];
+                } else if (count == expired.length) {
+                    expired = Arrays.copyOf(expired, Math.min(size, count * 2));
+                }
+                expired[count++] = keys[i];
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            remove(expired[i]);
+            action.accept(expired[i]);
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(final long key) {
+        return (int) ProbeCache.mix(key) & mask;
+    }
+
+    private void resize() {
+        final long[] previousKeys = keys;
+        final long[] previousValues = values;
+        keys = new long[previousKeys.length * 2];
+        values = new long[previousKeys.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+
+        for (int i = 0; i < previousKeys.length; i++) {
+            if (previousKeys[i] != EMPTY) {
+                int slot = slot(previousKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = previousKeys[i];
+                values[slot] = previousValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package io.mattw.jports;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing set of non-negative longs such as packed address:port values.
+ * <p>
+ * Avoids boxing every entry as a {@link Long}, which matters when holding millions of results.
+ * Not thread safe.
+ */
+class PackedLongSet {
+
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+
+    PackedLongSet() {
+        this(16);
+    }
+
+    PackedLongSet(final int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @return true if the value was not already present
+     */
+    boolean add(final long value) {
+        int slot = slot(value);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return true;
+    }
+
+    boolean contains(final long value) {
+        for (int slot = slot(value); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the value was present
+     */
+    boolean remove(final long value) {
+        int slot = slot(value);
+        while (keys[slot] != value) {
+            if (keys[slot] == EMPTY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Shift following entries back so lookups never stop early at the freed slot.
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            final int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                free = next;
+            }
+        }
+        keys[free] = EMPTY;
+        size--;
+        return true;
+    }
+
+    void forEach(final LongConsumer action) {
+        for (long key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(final long value) {
+        return (int) ProbeCache.mix(value) & mask;
+    }
+
+    private void resize() {
+        final long[] previous = keys;
+        keys = new long[previous.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(keys, EMPTY);
+
+        for (long key : previous) {
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+
+/**
+ * An address:port whose state differs from the previous scan's {@link ScanSnapshot}.
+ */
+public class PortChange implements Serializable {
+
+    public enum Type {
+        OPENED,
+        CLOSED
+    }
+
+    private IPv4AddressPort addressPort;
+    private Type type;
+
+    public PortChange(final IPv4AddressPort addressPort, final Type type) {
+        this.addressPort = addressPort;
+        this.type = type;
+    }
+
+    public IPv4AddressPort getAddressPort() {
+        return addressPort;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+}
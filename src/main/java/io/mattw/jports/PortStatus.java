@@ -0,0 +1,11 @@
+package io.mattw.jports;
+
+/**
+ * Outcome of checking an address:port.
+ */
+public enum PortStatus {
+    OPEN,         // connection accepted
+    CLOSED,       // connection refused
+    FILTERED,     // no answer within the timeout
+    UNREACHABLE   // host or network reported unreachable
+}
@@ -0,0 +1,182 @@
+package io.mattw.jports;
+
+import java.util.Arrays;
+
+/**
+ * Shared cache of recent probe outcomes keyed on the packed address:port value
+ * from {@link IPv4AddressPort#getPacked()}.
+ * <p>
+ * Entries expire after the configured time-to-live and the cache never grows past its
+ * capacity. Storage is two primitive arrays split into segments, roughly 16 bytes per
+ * entry, so tens of millions of entries stay practical. When every slot near a key is
+ * taken, the entry closest to expiring is evicted.
+ * <p>
+ * A single instance can be shared between any number of scans.
+ */
+public class ProbeCache {
+
+    private static final long EMPTY = -1L;
+    private static final int SEGMENTS = 64;
+    /**
+     * Number of neighbouring slots searched for a key before evicting.
+     */
+    private static final int PROBE_DISTANCE = 16;
+    /**
+     * Low bits of each stored value hold the {@link PortStatus} ordinal, the rest the expiry.
+     */
+    private static final int STATUS_BITS = 2;
+    private static final PortStatus[] STATUSES = PortStatus.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlMillis;
+    private final long epoch = System.currentTimeMillis();
+
+    /**
+     * @param maxEntries upper bound of entries kept, rounded up to a power of two
+     * @param ttlMillis  how long an outcome is reused before the target is probed again
+     */
+    public ProbeCache(final long maxEntries, final long ttlMillis) {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and ttl must be positive.");
+        }
+
+        this.ttlMillis = ttlMillis;
+
+        final long perSegment = Math.max(PROBE_DISTANCE, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        final int capacity = Integer.highestOneBit((int) Math.min(1 << 30, perSegment * 2 - 1));
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * @return cached outcome, or null when the target is not cached or has expired
+     */
+    public PortStatus get(final IPv4AddressPort addressPort) {
+        return get(addressPort.getPacked());
+    }
+
+    public PortStatus get(final long packed) {
+        final long hash = mix(packed);
+        return segments[(int) (hash >>> 58)].get(packed, (int) hash, now());
+    }
+
+    public void put(final IPv4AddressPort addressPort, final PortStatus status) {
+        put(addressPort.getPacked(), status);
+    }
+
+    public void put(final long packed, final PortStatus status) {
+        final long hash = mix(packed);
+        final long now = now();
+        segments[(int) (hash >>> 58)].put(packed, (int) hash, ((now + ttlMillis) << STATUS_BITS) | status.ordinal(), now);
+    }
+
+    /**
+     * @return number of unexpired entries, computed by walking the cache
+     */
+    public long size() {
+        final long now = now();
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size(now);
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Milliseconds since the cache was created, keeping stored expiry values small.
+     */
+    private long now() {
+        return System.currentTimeMillis() - epoch;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads the low port bits over the whole hash.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static class Segment {
+
+        private final long[] keys;
+        private final long[] values;
+        private final int mask;
+
+        Segment(final int capacity) {
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        synchronized PortStatus get(final long key, final int hash, final long now) {
+            for (int i = 0, slot = hash & mask; i < PROBE_DISTANCE; i++, slot = (slot + 1) & mask) {
+                if (keys[slot] == EMPTY) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    final long value = values[slot];
+                    return (value >>> STATUS_BITS) > now ? STATUSES[(int) (value & ((1 << STATUS_BITS) - 1))] : null;
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(final long key, final int hash, final long value, final long now) {
+            int victim = -1;
+            long victimExpiry = Long.MAX_VALUE;
+            for (int i = 0, slot = hash & mask; i < PROBE_DISTANCE; i++, slot = (slot + 1) & mask) {
+                if (keys[slot] == EMPTY || keys[slot] == key) {
+                    victim = slot;
+                    break;
+                }
+
+                final long expiry = values[slot] >>> STATUS_BITS;
+                if (expiry <= now) {
+                    // Keep looking in case the key itself is further along.
+                    if (victimExpiry > 0) {
+                        victim = slot;
+                        victimExpiry = 0;
+                    }
+                } else if (expiry < victimExpiry) {
+                    victim = slot;
+                    victimExpiry = expiry;
+                }
+            }
+
+            keys[victim] = key;
+            values[victim] = value;
+        }
+
+        synchronized long size(final long now) {
+            long size = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && (values[i] >>> STATUS_BITS) > now) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+
+}
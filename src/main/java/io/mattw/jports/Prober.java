@@ -0,0 +1,20 @@
+package io.mattw.jports;
+
+/**
+ * Checks a single address:port for {@link IPv4BlockPortScan}, blocking the calling consumer thread until done.
+ * Called from many threads at once.
+ *
+ * @see SocketProber
+ * @see AsyncProber
+ */
+@FunctionalInterface
+public interface Prober {
+
+    /**
+     * @param addressPort target to check
+     * @param timeout     millis to wait for an answer
+     * @return outcome of the check
+     */
+    PortStatus probe(IPv4AddressPort addressPort, int timeout);
+
+}
@@ -0,0 +1,6 @@
+package io.mattw.jports;
+
+public enum Protocol {
+    TCP,  // connect check with a socket
+    UDP   // datagram with a payload, open when answered
+}
@@ -0,0 +1,67 @@
+package io.mattw.jports;
+
+/**
+ * Walks 0 to size - 1 once each in a random order, without storing the order.
+ * <p>
+ * A four round Feistel network keyed at random is a permutation of the power of four at or above the size,
+ * and values it maps past the size are skipped (cycle walking), so at most four values are tried per value returned.
+ */
+class RandomPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] keys = new long[ROUNDS];
+    private long counter = 0;
+
+    /**
+     * @param size values in the permutation
+     * @param seed key of the order, the same seed gives the same order
+     */
+    RandomPermutation(final long size, final long seed) {
+        this.size = size;
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1));
+        bits += bits & 1;
+        this.halfBits = Math.max(1, bits / 2);
+        this.domain = 1L << (halfBits * 2);
+        this.halfMask = (1L << halfBits) - 1;
+        for (int i = 0; i < ROUNDS; i++) {
+            keys[i] = ProbeCache.mix(seed + 0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    /**
+     * @return next value, or -1 once all have been returned
+     */
+    long next() {
+        while (counter < domain) {
+            final long value = permute(counter++);
+            if (value < size) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return values in the permutation
+     */
+    long getSize() {
+        return size;
+    }
+
+    private long permute(final long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long key : keys) {
+            final long next = left ^ ProbeCache.mix(right ^ key) & halfMask;
+            left = right;
+            right = next;
+        }
+        return left << halfBits | right;
+    }
+
+}
@@ -0,0 +1,51 @@
+package io.mattw.jports;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces callers to a number of permits per second, spacing them evenly rather than in bursts.
+ */
+public class RateLimiter {
+
+    private long intervalNanos;
+    private long nextFree = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond greater than zero
+     */
+    public RateLimiter(final double permitsPerSecond) {
+        setRate(permitsPerSecond);
+    }
+
+    public synchronized void setRate(final double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive.");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public synchronized double getRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * Waits until the next permit is available.
+     */
+    public void acquire() {
+        final long wait;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            // Unused time is not saved up, so an idle limiter never releases a burst.
+            nextFree = Math.max(nextFree, now);
+            wait = nextFree - now;
+            nextFree += intervalNanos;
+        }
+
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+}
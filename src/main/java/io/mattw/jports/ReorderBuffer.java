@@ -0,0 +1,140 @@
+package io.mattw.jports;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Puts items that complete in any order back into the order of their sequence numbers.
+ * <p>
+ * Items are held in a ring of slots from the lowest sequence not yet emitted, the low-water mark, so at most
+ * a set number of sequences can be outstanding. The producer waits with {@link #awaitRoom} before handing out
+ * a sequence beyond that, which slows production rather than growing the buffer. Items are emitted one at a time
+ * by whichever thread completes the item at the low-water mark.
+ */
+class ReorderBuffer<T> {
+
+    private final Object[] slots;
+    private final boolean[] completed;
+    private final int capacity;
+    private final Consumer<T> emit;
+
+    private long next = 0;
+    private boolean draining = false;
+    private boolean producerWaiting = false;
+
+    /**
+     * @param capacity most sequences outstanding at once
+     * @param emit     receives items in sequence order, never concurrently
+     */
+    ReorderBuffer(final int capacity, final Consumer<T> emit) {
+        this.capacity = Math.max(1, capacity);
+        this.slots = new Object[this.capacity];
+        this.completed = new boolean[this.capacity];
+        this.emit = emit;
+    }
+
+    /**
+     * Waits until the sequence fits in the buffer.
+     *
+     * @param stop checked while waiting, ends the wait when true
+     */
+    synchronized void awaitRoom(final long sequence, final BooleanSupplier stop) {
+        while (sequence - next >= capacity && !stop.getAsBoolean()) {
+            producerWaiting = true;
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Marks a sequence done, emitting it and any following that are done once every earlier one has been.
+     *
+     * @param item null when the sequence has nothing to emit
+     */
+    void complete(final long sequence, final T item) {
+        synchronized (this) {
+            final int slot = (int) (sequence % capacity);
+            slots[slot] = item;
+            completed[slot] = true;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        try {
+            while (true) {
+                final T ready = take();
+                if (ready == null) {
+                    if (isDrained()) {
+                        return;
+                    }
+                } else {
+                    emit.accept(ready);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                draining = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return lowest sequence not yet emitted
+     */
+    synchronized long getLowWaterMark() {
+        return next;
+    }
+
+    /**
+     * @return sequences done but waiting on an earlier one
+     */
+    synchronized int getWaiting() {
+        int waiting = 0;
+        for (boolean done : completed) {
+            if (done) {
+                waiting++;
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * @return item at the low-water mark when done, moving past it, or null when it is not done or has nothing to emit
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized T take() {
+        final int slot = (int) (next % capacity);
+        if (!completed[slot]) {
+            return null;
+        }
+
+        final T item = (T) slots[slot];
+        slots[slot] = null;
+        completed[slot] = false;
+        next++;
+        if (producerWaiting) {
+            producerWaiting = false;
+            notifyAll();
+        }
+        return item;
+    }
+
+    /**
+     * @return whether draining ended, as the low-water mark is not done yet
+     */
+    private synchronized boolean isDrained() {
+        if (completed[(int) (next % capacity)]) {
+            return false;
+        }
+        draining = false;
+        return true;
+    }
+
+}
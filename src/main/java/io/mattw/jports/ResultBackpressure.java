@@ -0,0 +1,12 @@
+package io.mattw.jports;
+
+/**
+ * What a probe thread does with a result when the result stage's queue is full.
+ *
+ * @see IPv4BlockPortScan#setResultThreadCount(int)
+ */
+public enum ResultBackpressure {
+    BLOCK,        // wait for room, slowing probing down to the pace of the result threads
+    DROP,         // discard the result and count it as dropped
+    CALLER_RUNS   // handle the result on the probe thread
+}
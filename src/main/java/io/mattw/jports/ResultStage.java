@@ -0,0 +1,79 @@
+package io.mattw.jports;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Threads and bounded queue that handle results apart from the probe threads, so slow result handling
+ * does not hold up probing until the queue fills and the {@link ResultBackpressure} applies.
+ */
+class ResultStage {
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param threadCount threads handling results
+     * @param queueSize   results waiting for a thread before backpressure applies
+     * @param policy      what to do once the queue is full
+     */
+    ResultStage(final int threadCount, final int queueSize, final ResultBackpressure policy) {
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), handler(policy));
+        this.executor.prestartAllCoreThreads();
+    }
+
+    private RejectedExecutionHandler handler(final ResultBackpressure policy) {
+        switch (policy) {
+            case DROP:
+                return (runnable, executor) -> dropped.increment();
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case BLOCK:
+            default:
+                return (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Result stage has been shut down.");
+                    }
+                    try {
+                        executor.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting for the result stage.", e);
+                    }
+                };
+        }
+    }
+
+    void submit(final Runnable result) {
+        executor.execute(result);
+    }
+
+    /**
+     * Stops accepting results, those already queued are still handled.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    void await() throws InterruptedException {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+}
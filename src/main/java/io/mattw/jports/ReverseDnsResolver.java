@@ -0,0 +1,321 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Looks up the hostname of addresses (PTR records) without blocking the caller, for
+ * {@link IPv4BlockPortScan#setReverseDns(ReverseDnsResolver)}.
+ * <p>
+ * Lookups run on a bounded number of threads, either by querying a DNS server directly over UDP or through
+ * the system resolver. Concurrent lookups of the same address share one query, and outcomes are cached by
+ * size and age, including addresses without a hostname so they are not looked up again.
+ */
+public class ReverseDnsResolver implements AutoCloseable {
+
+    private static final int DNS_PORT = 53;
+    private static final int TYPE_PTR = 12;
+    private static final int CLASS_IN = 1;
+    private static final int RCODE_NXDOMAIN = 3;
+
+    private final InetSocketAddress server;
+    private int timeout = 2000;
+    private int maxConcurrent = 16;
+    private ExpiringCache<Long, String> cache = new ExpiringCache<>(65536, TimeUnit.MINUTES.toMillis(10));
+    private final Map<Long, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder queries = new LongAdder();
+    private ExecutorService executor;
+    private boolean closed = false;
+
+    /**
+     * Looks up through the system resolver, {@link InetAddress#getCanonicalHostName()}.
+     */
+    public ReverseDnsResolver() {
+        this.server = null;
+    }
+
+    /**
+     * Queries a DNS server directly over UDP.
+     *
+     * @param server address of the DNS server, port 53
+     */
+    public ReverseDnsResolver(final String server) {
+        this(new InetSocketAddress(server, DNS_PORT));
+    }
+
+    /**
+     * Queries a DNS server directly over UDP.
+     */
+    public ReverseDnsResolver(final InetSocketAddress server) {
+        this.server = server;
+    }
+
+    /**
+     * @param timeout millis to wait for the DNS server, default 2000
+     */
+    public ReverseDnsResolver setTimeout(final int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Takes effect before the first lookup.
+     *
+     * @param maxConcurrent lookups running at once, default 16
+     */
+    public ReverseDnsResolver setMaxConcurrent(final int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        return this;
+    }
+
+    /**
+     * @param maxEntries addresses kept, least recently used are evicted first, default 65536
+     * @param ttlMillis  age after which an address is looked up again, default 10 minutes
+     */
+    public ReverseDnsResolver setCache(final int maxEntries, final long ttlMillis) {
+        this.cache = new ExpiringCache<>(maxEntries, ttlMillis);
+        return this;
+    }
+
+    /**
+     * @return completes with the hostname, or null when the address has none, the lookup failed, or the resolver is closed
+     */
+    public CompletableFuture<String> resolve(final IPv4Address address) {
+        final long decimal = address.getDecimal();
+        final ExpiringCache.Entry<String> cached = cache.get(decimal);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.getValue());
+        }
+
+        final CompletableFuture<String> created = new CompletableFuture<>();
+        final CompletableFuture<String> existing = inFlight.putIfAbsent(decimal, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            getExecutor().execute(() -> {
+                String hostname = null;
+                try {
+                    hostname = lookup(address);
+                    cache.put(decimal, hostname);
+                } catch (IOException | RuntimeException ignored) {
+                    // Failures are not cached, the next scan may reach the server.
+                } finally {
+                    inFlight.remove(decimal);
+                    created.complete(hostname);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed, so no lookup will ever complete it for later callers either.
+            inFlight.remove(decimal);
+            created.complete(null);
+        }
+        return created;
+    }
+
+    /**
+     * @return lookups sent to the DNS server or system resolver so far
+     */
+    public long getQueryCount() {
+        return queries.sum();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Stops the lookup threads. Lookups already started still complete, later ones complete with null.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (closed) {
+            throw new RejectedExecutionException("Resolver has been closed.");
+        }
+        if (executor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        final Thread thread = new Thread(runnable, "jports-dns-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * @return hostname, or null when the address has none
+     * @throws IOException when the lookup could not be answered
+     */
+    private String lookup(final IPv4Address address) throws IOException {
+        queries.increment();
+        if (server == null) {
+            final InetAddress inetAddress = InetAddress.getByName(address.getAddress());
+            final String hostname = inetAddress.getCanonicalHostName();
+            // The system resolver answers with the address itself when there is no hostname.
+            return hostname.equals(address.getAddress()) ? null : hostname;
+        }
+
+        final int id = ThreadLocalRandom.current().nextInt(0x10000);
+        final byte[] query = buildQuery(id, address);
+        final byte[] buffer = new byte[512];
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.setSoTimeout(timeout);
+            socket.send(new DatagramPacket(query, query.length, server));
+
+            final long deadline = System.currentTimeMillis() + timeout;
+            while (true) {
+                final DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(response);
+                } catch (SocketTimeoutException e) {
+                    throw new IOException("No answer from " + server + " for " + address.getAddress(), e);
+                }
+
+                // Ignore strays that are not the answer to this query.
+                if (server.getAddress().equals(response.getAddress()) && response.getLength() >= 12
+                        && ((buffer[0] & 0xFF) << 8 | buffer[1] & 0xFF) == id) {
+                    return parseResponse(ByteBuffer.wrap(buffer, 0, response.getLength()));
+                }
+
+                final int remaining = (int) (deadline - System.currentTimeMillis());
+                if (remaining <= 0) {
+                    throw new IOException("No answer from " + server + " for " + address.getAddress());
+                }
+                socket.setSoTimeout(remaining);
+            }
+        }
+    }
+
+    /**
+     * @return PTR query for d.c.b.a.in-addr.arpa
+     */
+    static byte[] buildQuery(final int id, final IPv4Address address) {
+        final String[] octets = address.getAddress().split("\\.");
+        final ByteBuffer query = ByteBuffer.allocate(64);
+        query.putShort((short) id);
+        query.putShort((short) 0x0100); // recursion desired
+        query.putShort((short) 1);      // one question
+        query.putShort((short) 0);
+        query.putShort((short) 0);
+        query.putShort((short) 0);
+        for (int i = octets.length - 1; i >= 0; i--) {
+            query.put((byte) octets[i].length());
+            query.put(octets[i].getBytes());
+        }
+        query.put((byte) 7).put("in-addr".getBytes());
+        query.put((byte) 4).put("arpa".getBytes());
+        query.put((byte) 0);
+        query.putShort((short) TYPE_PTR);
+        query.putShort((short) CLASS_IN);
+
+        final byte[] bytes = new byte[query.position()];
+        query.flip();
+        query.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the first PTR name in the answer, or null when there is none
+     * @throws IOException when the server failed to answer
+     */
+    static String parseResponse(final ByteBuffer response) throws IOException {
+        response.getShort();
+        final int flags = response.getShort() & 0xFFFF;
+        final int questions = response.getShort() & 0xFFFF;
+        final int answers = response.getShort() & 0xFFFF;
+        response.getShort();
+        response.getShort();
+
+        final int rcode = flags & 0xF;
+        if (rcode == RCODE_NXDOMAIN) {
+            return null;
+        } else if (rcode != 0) {
+            throw new UnknownHostException("DNS server answered with error " + rcode);
+        }
+
+        for (int i = 0; i < questions; i++) {
+            readName(response);
+            response.position(response.position() + 4);
+        }
+
+        for (int i = 0; i < answers; i++) {
+            readName(response);
+            final int type = response.getShort() & 0xFFFF;
+            response.position(response.position() + 6); // class and ttl
+            final int length = response.getShort() & 0xFFFF;
+            final int end = response.position() + length;
+
+            if (type == TYPE_PTR) {
+                return readName(response);
+            }
+            response.position(end);
+        }
+        return null;
+    }
+
+    /**
+     * Reads a possibly compressed name, leaving the buffer after it.
+     */
+    private static String readName(final ByteBuffer buffer) throws IOException {
+        final StringBuilder name = new StringBuilder();
+        int position = buffer.position();
+        int resume = -1;
+        // Bounds the pointers followed, so a malicious loop cannot hang the lookup.
+        for (int jumps = 0; jumps < 32; ) {
+            final int length = buffer.get(position) & 0xFF;
+            if (length == 0) {
+                buffer.position(resume >= 0 ? resume : position + 1);
+                return name.toString();
+            }
+
+            if ((length & 0xC0) == 0xC0) {
+                if (resume < 0) {
+                    resume = position + 2;
+                }
+                position = (length & 0x3F) << 8 | buffer.get(position + 1) & 0xFF;
+                jumps++;
+                continue;
+            }
+
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            for (int i = 1; i <= length; i++) {
+                name.append((char) (buffer.get(position + i) & 0xFF));
+            }
+            position += length + 1;
+        }
+        throw new IOException("DNS name has too many pointers.");
+    }
+
+}
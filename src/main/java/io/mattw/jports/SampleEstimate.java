@@ -0,0 +1,94 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+
+/**
+ * Estimate of the fraction of address:port that are open, from a random sample taken by
+ * {@link IPv4BlockPortScan#setSampling(double, long)}, with its 95% Wilson score interval.
+ */
+public class SampleEstimate implements Serializable {
+
+    /**
+     * Standard normal quantile for 95% confidence.
+     */
+    static final double Z = 1.959963984540054;
+
+    private final long population;
+    private final long sampled;
+    private final long open;
+    private final double lower;
+    private final double upper;
+
+    /**
+     * @param population address:port that could be sampled
+     * @param sampled    address:port checked
+     * @param open       of those, found open
+     */
+    public SampleEstimate(final long population, final long sampled, final long open) {
+        this.population = population;
+        this.sampled = sampled;
+        this.open = open;
+
+        if (sampled == 0) {
+            this.lower = 0;
+            this.upper = 1;
+        } else {
+            final double n = sampled;
+            final double p = open / n;
+            final double z2 = Z * Z;
+            final double denominator = 1 + z2 / n;
+            final double center = (p + z2 / (2 * n)) / denominator;
+            final double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / denominator;
+            this.lower = Math.max(0, center - half);
+            this.upper = Math.min(1, center + half);
+        }
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public long getSampled() {
+        return sampled;
+    }
+
+    public long getOpen() {
+        return open;
+    }
+
+    /**
+     * @return fraction of the sample found open
+     */
+    public double getProportion() {
+        return sampled == 0 ? 0 : (double) open / sampled;
+    }
+
+    public double getLower() {
+        return lower;
+    }
+
+    public double getUpper() {
+        return upper;
+    }
+
+    /**
+     * @return half the width of the interval, the precision of the estimate
+     */
+    public double getHalfWidth() {
+        return (upper - lower) / 2;
+    }
+
+    /**
+     * @return estimated number of open address:port in the whole population
+     */
+    public long getEstimatedOpen() {
+        return Math.round(getProportion() * population);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f%% open [%.4f%%, %.4f%%] from %d of %d", getProportion() * 100, lower * 100, upper * 100,
+                sampled, population);
+    }
+
+}
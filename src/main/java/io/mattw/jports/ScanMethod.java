@@ -5,5 +5,6 @@ public enum ScanMethod {
     MULTI_ADDRESS,     // x.x.x.x,x.x.x.y
     RANGE_ADDRESS,     // x.x.x.x/16 or x.x.x.x-x.y.y.y
     ENDLESS_INCREASE,  // x.x.x.x
-    ENDLESS_DECREASE   // x.x.x.x
+    ENDLESS_DECREASE,  // x.x.x.x
+    STREAM_ADDRESS     // Iterator<IPv4Address>, read lazily
 }
@@ -0,0 +1,77 @@
+package io.mattw.jports;
+
+import java.time.Duration;
+
+/**
+ * Point in time view of a scan's progress, delivered periodically by
+ * {@link BlockScan#setProgressListener(java.util.function.Consumer, long)}.
+ */
+public class ScanProgress {
+
+    private final long completed;
+    private final long total;
+    private final double rate;
+    private final Duration elapsed;
+    private final boolean finished;
+
+    ScanProgress(final long completed, final long total, final double rate, final Duration elapsed, final boolean finished) {
+        this.completed = completed;
+        this.total = total;
+        this.rate = rate;
+        this.elapsed = elapsed;
+        this.finished = finished;
+    }
+
+    /**
+     * @return items taken by consumers so far
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return total items the scan will produce, -1 for endless scans
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return items remaining, -1 for endless scans
+     */
+    public long getRemaining() {
+        return total < 0 ? -1 : Math.max(0, total - completed);
+    }
+
+    /**
+     * @return items per second over the last interval
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * @return estimated time left at the current rate, null when unknown
+     */
+    public Duration getEta() {
+        if (finished) {
+            return Duration.ZERO;
+        }
+        if (total < 0 || rate <= 0) {
+            return null;
+        }
+        return Duration.ofMillis((long) (getRemaining() / rate * 1000));
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return true for the last snapshot, sent once all consumers are done
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.mattw.jports;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes to a running {@link IPv4BlockPortScan}, collected and then applied all at once with {@link #apply()}.
+ * Probes already in flight finish with the settings they started with, every probe after sees all of the changes.
+ *
+ * @see IPv4BlockPortScan#reconfigure()
+ */
+public class ScanReconfiguration {
+
+    private final IPv4BlockPortScan scan;
+    private Integer threadCount;
+    private Integer checkTimeout;
+    private Double rateLimit;
+    private final Set<Integer> addedPorts = new LinkedHashSet<>();
+    private final Set<Integer> removedPorts = new LinkedHashSet<>();
+    private final List<String> addedExclusions = new ArrayList<>();
+    private final List<String> removedExclusions = new ArrayList<>();
+
+    ScanReconfiguration(final IPv4BlockPortScan scan) {
+        this.scan = scan;
+    }
+
+    /**
+     * Probe threads for blocking probes, or probes in flight at once for asynchronous ones. Threads above the new
+     * count stop after their current probe.
+     */
+    public ScanReconfiguration setThreadCount(final int threadCount) {
+        this.threadCount = Math.max(1, Math.abs(threadCount));
+        return this;
+    }
+
+    /**
+     * @param checkTimeout millis
+     */
+    public ScanReconfiguration setCheckTimeout(final int checkTimeout) {
+        this.checkTimeout = checkTimeout;
+        return this;
+    }
+
+    /**
+     * @param itemsPerSecond new rate limit, 0 to remove it
+     */
+    public ScanReconfiguration setRateLimit(final double itemsPerSecond) {
+        this.rateLimit = Math.max(0, itemsPerSecond);
+        return this;
+    }
+
+    /**
+     * Ports checked for addresses produced from now on.
+     */
+    public ScanReconfiguration addPorts(final Collection<Integer> ports) {
+        ports.forEach(port -> {
+            addedPorts.add(Math.abs(port) % 65536);
+            removedPorts.remove(Math.abs(port) % 65536);
+        });
+        return this;
+    }
+
+    /**
+     * Ports no longer checked, including address:ports already queued.
+     */
+    public ScanReconfiguration removePorts(final Collection<Integer> ports) {
+        ports.forEach(port -> {
+            removedPorts.add(Math.abs(port) % 65536);
+            addedPorts.remove(Math.abs(port) % 65536);
+        });
+        return this;
+    }
+
+    /**
+     * Addresses no longer checked, including address:ports already queued. Skipped addresses count as done.
+     *
+     * @param block CIDR prefix
+     */
+    public ScanReconfiguration addExclusion(final IPv4AddressBlock block) {
+        final String prefix = cidr(block);
+        addedExclusions.add(prefix);
+        removedExclusions.remove(prefix);
+        return this;
+    }
+
+    /**
+     * Checks addresses of a prefix excluded before again, from the next address produced.
+     *
+     * @param block CIDR prefix
+     */
+    public ScanReconfiguration removeExclusion(final IPv4AddressBlock block) {
+        final String prefix = cidr(block);
+        removedExclusions.add(prefix);
+        addedExclusions.remove(prefix);
+        return this;
+    }
+
+    private static String cidr(final IPv4AddressBlock block) {
+        if (!block.isValidCIDR()) {
+            throw new IllegalArgumentException("Block is not a CIDR prefix: " + block.getRangeNotation());
+        }
+        return block.getCidrNotation();
+    }
+
+    /**
+     * Swaps the changes into the running scan together.
+     *
+     * @throws IllegalStateException when the scan is not running or cannot take one of the changes
+     */
+    public void apply() {
+        scan.apply(this);
+    }
+
+    Integer getThreadCount() {
+        return threadCount;
+    }
+
+    Integer getCheckTimeout() {
+        return checkTimeout;
+    }
+
+    Double getRateLimit() {
+        return rateLimit;
+    }
+
+    Set<Integer> getAddedPorts() {
+        return addedPorts;
+    }
+
+    Set<Integer> getRemovedPorts() {
+        return removedPorts;
+    }
+
+    List<String> getAddedExclusions() {
+        return addedExclusions;
+    }
+
+    List<String> getRemovedExclusions() {
+        return removedExclusions;
+    }
+
+    boolean changesTargets() {
+        return !addedPorts.isEmpty() || !removedPorts.isEmpty() || !addedExclusions.isEmpty() || !removedExclusions.isEmpty();
+    }
+
+}
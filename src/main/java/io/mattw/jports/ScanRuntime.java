@@ -0,0 +1,228 @@
+package io.mattw.jports;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long lived pool of workers that any number of {@link IPv4BlockScan} and {@link IPv4BlockPortScan} jobs
+ * can be submitted to, instead of each {@link BlockScan#execute()} creating and discarding its own threads.
+ * <p>
+ * The worker count is the global concurrency limit and an optional {@link RateLimiter} the global rate.
+ * Each item goes to the job with the highest priority that has queued work. Jobs of equal priority
+ * share workers in proportion to their weight (stride scheduling), so a small interactive scan stays
+ * responsive next to a large background sweep.
+ * <p>
+ * Jobs keep one producer thread each, taken from a shared pool. UDP scans run their own engine and
+ * cannot be submitted.
+ */
+public class ScanRuntime implements AutoCloseable {
+
+    private final List<Job> jobs = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final ExecutorService producers;
+    private RateLimiter rateLimiter;
+    private volatile boolean closed = false;
+
+    /**
+     * @param workerCount number of items processed at once across all jobs
+     */
+    public ScanRuntime(final int workerCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadFactory daemonFactory = runnable -> {
+            final Thread thread = new Thread(runnable, "jports-runtime-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.producers = Executors.newCachedThreadPool(daemonFactory);
+        for (int i = 0; i < Math.max(1, workerCount); i++) {
+            final Thread worker = daemonFactory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Global rate of items processed per second across all jobs.
+     */
+    public ScanRuntime setRateLimit(final double itemsPerSecond) {
+        this.rateLimiter = new RateLimiter(itemsPerSecond);
+        return this;
+    }
+
+    /**
+     * Submits a job with priority 0 and weight 1.
+     */
+    public <S extends BlockScan<S>> S submit(final S scan) {
+        return submit(scan, 0, 1);
+    }
+
+    /**
+     * Starts producing for the scan and shares the workers with it. Await the scan as usual with {@link BlockScan#await()}.
+     *
+     * @param scan     configured scan that has not been executed
+     * @param priority higher priority jobs are always served first
+     * @param weight   share of workers relative to other jobs of the same priority
+     */
+    public <S extends BlockScan<S>> S submit(final S scan, final int priority, final int weight) {
+        if (closed) {
+            throw new IllegalStateException("Runtime has been closed.");
+        }
+        if (!scan.supportsRuntime()) {
+            throw new IllegalArgumentException("Scan cannot run on a shared runtime.");
+        }
+
+        scan.prepare();
+        scan.runtimeDone = new CountDownLatch(1);
+        scan.producer = new ExecutorGroup(producers, 1);
+        // The producer must be running before the job is visible, or it would look finished.
+        scan.producer.submitAndShutdown(scan::producer);
+        scan.startProgressReporter();
+
+        synchronized (this) {
+            // Start level with the least served job so a new job neither waits nor takes over.
+            double pass = jobs.isEmpty() ? 0 : Double.MAX_VALUE;
+            for (Job job : jobs) {
+                pass = Math.min(pass, job.pass);
+            }
+            jobs.add(new Job(scan, priority, Math.max(1, weight), pass));
+            notifyAll();
+        }
+        return scan;
+    }
+
+    /**
+     * @return number of jobs not yet finished
+     */
+    public synchronized int getActiveJobs() {
+        return jobs.size();
+    }
+
+    /**
+     * Stops the workers. Jobs still running are shut down and released from {@link BlockScan#await()}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final List<Job> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(jobs);
+            jobs.clear();
+            notifyAll();
+        }
+
+        for (Job job : remaining) {
+            job.scan.shutdown();
+            job.finish();
+        }
+        producers.shutdown();
+    }
+
+    private void work() {
+        final String threadId = Thread.currentThread().getName();
+        final List<Job> done = new ArrayList<>();
+        while (!closed) {
+            final Job job = next(done);
+
+            // Finish outside the lock, it may call back into user code.
+            done.forEach(Job::finish);
+            done.clear();
+
+            if (job == null) {
+                continue;
+            }
+
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+
+            try {
+                job.scan.consumeNext(threadId);
+            } finally {
+                if (complete(job)) {
+                    job.finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the job to serve next, waiting briefly when no job has queued work.
+     *
+     * @param done receives jobs found to be done, to be finished by the caller
+     */
+    private synchronized Job next(final List<Job> done) {
+        Job chosen = null;
+        for (Iterator<Job> iterator = jobs.iterator(); iterator.hasNext(); ) {
+            final Job job = iterator.next();
+            if (job.isDone()) {
+                iterator.remove();
+                done.add(job);
+                continue;
+            }
+
+            if (job.scan.shutdown || job.scan.getQueueSize() == 0) {
+                continue;
+            }
+            if (chosen == null || job.priority > chosen.priority
+                    || job.priority == chosen.priority && job.pass < chosen.pass) {
+                chosen = job;
+            }
+        }
+
+        if (chosen == null) {
+            // Producers do not signal new items, so poll again shortly.
+            try {
+                wait(5);
+            } catch (InterruptedException ignored) {}
+            return null;
+        }
+
+        chosen.inFlight++;
+        chosen.pass += 1.0 / chosen.weight;
+        return chosen;
+    }
+
+    /**
+     * @return whether the job is now done and should be finished by the caller
+     */
+    private synchronized boolean complete(final Job job) {
+        job.inFlight--;
+        return job.isDone() && jobs.remove(job);
+    }
+
+    private static class Job {
+
+        private final BlockScan<?> scan;
+        private final int priority;
+        private final int weight;
+        private double pass;
+        private int inFlight;
+
+        Job(final BlockScan<?> scan, final int priority, final int weight, final double pass) {
+            this.scan = scan;
+            this.priority = priority;
+            this.weight = weight;
+            this.pass = pass;
+        }
+
+        boolean isDone() {
+            if (inFlight > 0) {
+                return false;
+            }
+            return scan.shutdown || !scan.producer.isStillWorking() && !scan.hasPendingWork() && scan.getQueueSize() == 0;
+        }
+
+        void finish() {
+            scan.finished();
+            scan.runtimeDone.countDown();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.mattw.jports;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Set of open address:port found by a previous scan, used by {@link IPv4BlockPortScan#setDiffSnapshot(ScanSnapshot)}
+ * to emit only what changed since then.
+ * <p>
+ * The snapshot is updated in place as a scan runs, so saving it afterwards gives the input for the next run.
+ * Entries are stored as packed values from {@link IPv4AddressPort#getPacked()}.
+ */
+public class ScanSnapshot {
+
+    private final PackedLongSet open;
+    private final PackedLongSet seen = new PackedLongSet();
+
+    /**
+     * Empty snapshot, every open address:port will be reported as newly opened.
+     */
+    public ScanSnapshot() {
+        this.open = new PackedLongSet();
+    }
+
+    private ScanSnapshot(final PackedLongSet open) {
+        this.open = open;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #save(Path)}.
+     */
+    public static ScanSnapshot load(final Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            final int count = in.readInt();
+            final PackedLongSet open = new PackedLongSet(count);
+            for (int i = 0; i < count; i++) {
+                open.add(in.readLong());
+            }
+            return new ScanSnapshot(open);
+        }
+    }
+
+    /**
+     * Writes the open address:port as a count followed by the packed values.
+     */
+    public synchronized void save(final Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(open.size());
+
+            final IOException[] failure = new IOException[1];
+            open.forEach(packed -> {
+                try {
+                    out.writeLong(packed);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+    }
+
+    public synchronized boolean isOpen(final IPv4AddressPort addressPort) {
+        return open.contains(addressPort.getPacked());
+    }
+
+    public synchronized int size() {
+        return open.size();
+    }
+
+    /**
+     * Forgets what an earlier scan saw, which may have stopped before {@link #closeUnseen} could.
+     */
+    synchronized void beginScan() {
+        seen.clear();
+    }
+
+    /**
+     * Records an open address:port found by the current scan.
+     *
+     * @param track whether to remember it for {@link #closeUnseen}, only when the scan will compute closures
+     * @return true if it was not open in the snapshot
+     */
+    synchronized boolean markOpen(final IPv4AddressPort addressPort, final boolean track) {
+        final long packed = addressPort.getPacked();
+        if (track) {
+            seen.add(packed);
+        }
+        return open.add(packed);
+    }
+
+    /**
+     * Removes snapshot entries inside the finished range that the current scan did not find open.
+     *
+     * @param scanned whether a packed address:port was covered by the current scan
+     * @param closed  receives each packed address:port no longer open
+     */
+    synchronized void closeUnseen(final LongPredicate scanned, final LongConsumer closed) {
+        final PackedLongSet unseen = new PackedLongSet();
+        open.forEach(packed -> {
+            if (!seen.contains(packed) && scanned.test(packed)) {
+                unseen.add(packed);
+            }
+        });
+
+        unseen.forEach(packed -> {
+            open.remove(packed);
+            closed.accept(packed);
+        });
+        seen.clear();
+    }
+
+}
@@ -0,0 +1,12 @@
+package io.mattw.jports;
+
+/**
+ * Stages an address:port passes through in a port scan, as reported to a {@link ScanStageListener}.
+ */
+public enum ScanStage {
+    OFFER,     // producer waiting for room in the queue
+    QUEUE,     // waiting in the queue for a consumer
+    DISPATCH,  // waiting on the rate limit and probe slots, then starting the probe
+    PROBE,     // from the probe starting until its outcome is known, such as a connect completing
+    CONSUME    // running the consuming method
+}
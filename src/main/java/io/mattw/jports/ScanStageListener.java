@@ -0,0 +1,21 @@
+package io.mattw.jports;
+
+/**
+ * Receives the time spent in each {@link ScanStage}, from whichever thread ran the stage.
+ * Called for every address:port, so implementations should be quick and thread safe.
+ *
+ * @see StageTimings
+ * @see JfrStageListener
+ */
+@FunctionalInterface
+public interface ScanStageListener {
+
+    /**
+     * @param stage       stage that completed
+     * @param addressPort item that went through the stage
+     * @param outcome     result of the check, null before it was checked
+     * @param nanos       time spent in the stage
+     */
+    void stageCompleted(ScanStage stage, IPv4AddressPort addressPort, PortStatus outcome, long nanos);
+
+}
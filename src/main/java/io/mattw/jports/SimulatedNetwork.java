@@ -0,0 +1,141 @@
+package io.mattw.jports;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory {@link AsyncProber} for benchmarking and testing scans without touching the network.
+ * <p>
+ * Whether an address:port is open is fixed by the seed, so {@link #isOpen(IPv4AddressPort)} tells a test what a scan
+ * should find. Each probe is lost with the loss rate and then times out as {@link PortStatus#FILTERED}, otherwise it answers
+ * {@link PortStatus#OPEN} or {@link PortStatus#CLOSED} after a latency drawn evenly between the minimum and maximum.
+ * Loss and latency are also fixed by the seed for each address:port and retry, so runs are repeatable.
+ * <p>
+ * With no latency probes complete on the calling thread, which is how to measure the scan itself.
+ */
+public class SimulatedNetwork implements AsyncProber {
+
+    private long seed = 0;
+    private double openDensity = 0.01;
+    private double lossRate = 0;
+    private long minLatencyMicros = 0;
+    private long maxLatencyMicros = 0;
+
+    private final LongAdder probeCount = new LongAdder();
+    private volatile ScheduledExecutorService timer;
+
+    public SimulatedNetwork setSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param openDensity fraction of address:port that are open, default 0.01
+     */
+    public SimulatedNetwork setOpenDensity(final double openDensity) {
+        this.openDensity = Math.max(0, Math.min(1, openDensity));
+        return this;
+    }
+
+    /**
+     * @param lossRate fraction of probes that get no answer, default 0
+     */
+    public SimulatedNetwork setLossRate(final double lossRate) {
+        this.lossRate = Math.max(0, Math.min(1, lossRate));
+        return this;
+    }
+
+    /**
+     * @param minMicros shortest time to answer, default 0
+     * @param maxMicros longest time to answer, default 0
+     */
+    public SimulatedNetwork setLatency(final long minMicros, final long maxMicros) {
+        this.minLatencyMicros = Math.max(0, Math.min(minMicros, maxMicros));
+        this.maxLatencyMicros = Math.max(0, Math.max(minMicros, maxMicros));
+        return this;
+    }
+
+    /**
+     * @return whether the address:port is open in this network, when the probe is not lost
+     */
+    public boolean isOpen(final IPv4AddressPort addressPort) {
+        return fraction(addressPort.getPacked()) < openDensity;
+    }
+
+    @Override
+    public PortStatus probe(final IPv4AddressPort addressPort, final int timeout) {
+        probeCount.increment();
+        final long delayMicros = delayMicros(addressPort, timeout);
+        if (delayMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(delayMicros));
+        }
+        return outcome(addressPort);
+    }
+
+    @Override
+    public CompletableFuture<PortStatus> probeAsync(final IPv4AddressPort addressPort, final int timeout) {
+        probeCount.increment();
+        final long delayMicros = delayMicros(addressPort, timeout);
+        if (delayMicros == 0) {
+            return CompletableFuture.completedFuture(outcome(addressPort));
+        }
+
+        final CompletableFuture<PortStatus> future = new CompletableFuture<>();
+        getTimer().schedule(() -> future.complete(outcome(addressPort)), delayMicros, TimeUnit.MICROSECONDS);
+        return future;
+    }
+
+    /**
+     * @return probes received so far
+     */
+    public long getProbeCount() {
+        return probeCount.sum();
+    }
+
+    private PortStatus outcome(final IPv4AddressPort addressPort) {
+        if (isLost(addressPort)) {
+            return PortStatus.FILTERED;
+        }
+        return isOpen(addressPort) ? PortStatus.OPEN : PortStatus.CLOSED;
+    }
+
+    private boolean isLost(final IPv4AddressPort addressPort) {
+        return lossRate > 0 && fraction(addressPort.getPacked() * 31 + addressPort.getRetries() + 1) < lossRate;
+    }
+
+    private long delayMicros(final IPv4AddressPort addressPort, final int timeout) {
+        if (isLost(addressPort)) {
+            return TimeUnit.MILLISECONDS.toMicros(timeout);
+        }
+        final long spread = maxLatencyMicros - minLatencyMicros;
+        final long jitter = spread == 0 ? 0 : (long) (fraction(~addressPort.getPacked() * 17 + addressPort.getRetries()) * (spread + 1));
+        return minLatencyMicros + jitter;
+    }
+
+    /**
+     * @return repeatable value in [0, 1) for the key under this seed
+     */
+    private double fraction(final long key) {
+        return (ProbeCache.mix(key ^ ProbeCache.mix(seed)) >>> 11) * 0x1.0p-53;
+    }
+
+    private ScheduledExecutorService getTimer() {
+        if (timer == null) {
+            synchronized (this) {
+                if (timer == null) {
+                    timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "jports-simulated-network");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return timer;
+    }
+
+}
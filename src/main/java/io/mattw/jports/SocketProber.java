@@ -0,0 +1,73 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Default {@link Prober}, a blocking TCP connect with a {@link java.net.Socket}.
+ */
+public class SocketProber implements Prober {
+
+    private SourceAddressPool sourceAddressPool;
+    private boolean abortiveClose = false;
+    private boolean reuseAddress = false;
+
+    /**
+     * @see IPv4BlockPortScan#setSourceAddressPool(SourceAddressPool)
+     */
+    public SocketProber setSourceAddressPool(final SourceAddressPool sourceAddressPool) {
+        this.sourceAddressPool = sourceAddressPool;
+        return this;
+    }
+
+    /**
+     * @see IPv4BlockPortScan#setAbortiveClose(boolean)
+     */
+    public SocketProber setAbortiveClose(final boolean abortiveClose) {
+        this.abortiveClose = abortiveClose;
+        return this;
+    }
+
+    /**
+     * @see IPv4BlockPortScan#setReuseAddress(boolean)
+     */
+    public SocketProber setReuseAddress(final boolean reuseAddress) {
+        this.reuseAddress = reuseAddress;
+        return this;
+    }
+
+    @Override
+    public PortStatus probe(final IPv4AddressPort addressPort, final int timeout) {
+        try (Socket socket = new Socket()) {
+            if (reuseAddress) {
+                socket.setReuseAddress(true);
+            }
+            if (abortiveClose) {
+                socket.setSoLinger(true, 0);
+            }
+            if (sourceAddressPool != null) {
+                socket.bind(new InetSocketAddress(sourceAddressPool.next(), 0));
+            }
+
+            socket.connect(new InetSocketAddress(addressPort.getiPv4Address().getAddress(), addressPort.getPort()), timeout);
+
+            return PortStatus.OPEN;
+        } catch (IOException e) {
+            return IPv4BlockPortScan.classify(e);
+        }
+    }
+
+    public SourceAddressPool getSourceAddressPool() {
+        return sourceAddressPool;
+    }
+
+    public boolean isAbortiveClose() {
+        return abortiveClose;
+    }
+
+    public boolean isReuseAddress() {
+        return reuseAddress;
+    }
+
+}
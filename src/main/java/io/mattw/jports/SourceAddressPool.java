@@ -0,0 +1,62 @@
+package io.mattw.jports;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local addresses that probe sockets bind to in rotation.
+ * <p>
+ * Every local address has its own range of ephemeral ports, so spreading connects over several
+ * addresses multiplies the connect rate that can be sustained before ports run out.
+ * The addresses must be assigned to an interface of the scanning machine.
+ */
+public class SourceAddressPool {
+
+    private final List<InetAddress> addresses;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param addresses local addresses such as x.x.x.x
+     */
+    public SourceAddressPool(final Collection<String> addresses) {
+        final List<InetAddress> parsed = new ArrayList<>();
+        for (String address : addresses) {
+            try {
+                parsed.add(InetAddress.getByName(address.trim()));
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Invalid source address: " + address, e);
+            }
+        }
+
+        this.addresses = Collections.unmodifiableList(parsed);
+        if (this.addresses.isEmpty()) {
+            throw new IllegalArgumentException("Source address pool should not be empty.");
+        }
+    }
+
+    public SourceAddressPool(final InetAddress... addresses) {
+        if (addresses.length == 0) {
+            throw new IllegalArgumentException("Source address pool should not be empty.");
+        }
+
+        this.addresses = Collections.unmodifiableList(Arrays.asList(addresses));
+    }
+
+    /**
+     * @return the next address in rotation
+     */
+    public InetAddress next() {
+        return addresses.get((next.getAndIncrement() & Integer.MAX_VALUE) % addresses.size());
+    }
+
+    public List<InetAddress> getAddresses() {
+        return addresses;
+    }
+
+}
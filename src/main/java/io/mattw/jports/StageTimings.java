@@ -0,0 +1,79 @@
+package io.mattw.jports;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ScanStageListener} that sums the count and time of each stage, striped per thread so recording
+ * from many consumers stays cheap. Read it at any time to see where a running scan spends its time.
+ */
+public class StageTimings implements ScanStageListener {
+
+    private final Map<ScanStage, LongAdder> counts = new EnumMap<>(ScanStage.class);
+    private final Map<ScanStage, LongAdder> nanos = new EnumMap<>(ScanStage.class);
+    private final Map<ScanStage, LongAccumulator> maxNanos = new EnumMap<>(ScanStage.class);
+
+    public StageTimings() {
+        for (ScanStage stage : ScanStage.values()) {
+            counts.put(stage, new LongAdder());
+            nanos.put(stage, new LongAdder());
+            maxNanos.put(stage, new LongAccumulator(Math::max, 0));
+        }
+    }
+
+    @Override
+    public void stageCompleted(final ScanStage stage, final IPv4AddressPort addressPort, final PortStatus outcome, final long nanos) {
+        counts.get(stage).increment();
+        this.nanos.get(stage).add(nanos);
+        maxNanos.get(stage).accumulate(nanos);
+    }
+
+    /**
+     * @return times the stage completed
+     */
+    public long getCount(final ScanStage stage) {
+        return counts.get(stage).sum();
+    }
+
+    /**
+     * @return time spent in the stage across all threads
+     */
+    public Duration getTotal(final ScanStage stage) {
+        return Duration.ofNanos(nanos.get(stage).sum());
+    }
+
+    public Duration getAverage(final ScanStage stage) {
+        final long count = getCount(stage);
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(nanos.get(stage).sum() / count);
+    }
+
+    public Duration getMax(final ScanStage stage) {
+        return Duration.ofNanos(maxNanos.get(stage).get());
+    }
+
+    public void reset() {
+        for (ScanStage stage : ScanStage.values()) {
+            counts.get(stage).reset();
+            nanos.get(stage).reset();
+            maxNanos.get(stage).reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (ScanStage stage : ScanStage.values()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(stage).append(" count=").append(getCount(stage))
+                    .append(" avg=").append(getAverage(stage).toNanos() / 1000).append("us")
+                    .append(" max=").append(getMax(stage).toNanos() / 1000).append("us");
+        }
+        return builder.toString();
+    }
+
+}
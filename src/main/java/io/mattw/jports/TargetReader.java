@@ -0,0 +1,123 @@
+package io.mattw.jports;
+
+import java.io.BufferedReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Lazily expands target specifications into addresses, for scans of {@link ScanMethod#STREAM_ADDRESS}.
+ * <p>
+ * Accepts single addresses (x.x.x.x), CIDR blocks (x.x.x.x/y, aligned down to the network address) and
+ * inclusive ranges (x.x.x.x-y.y.y.y), separated by whitespace, commas or new lines. Text after a # is ignored.
+ * Only the current line and position within the current block are held, so memory use does not depend
+ * on how many targets there are.
+ */
+public class TargetReader implements Iterator<IPv4Address> {
+
+    private static final long MAX_DECIMAL = 0xFFFFFFFFL;
+
+    private final Iterator<String> lines;
+    private final Deque<String> tokens = new ArrayDeque<>();
+    private Consumer<String> invalidMethod = token -> {
+        throw new IllegalArgumentException("Invalid target: " + token);
+    };
+
+    private long next = 1;
+    private long last = 0;
+
+    /**
+     * @param reader read line by line as addresses are needed
+     */
+    public TargetReader(final BufferedReader reader) {
+        this(reader.lines().iterator());
+    }
+
+    /**
+     * @param targets target specifications, one or more per entry
+     */
+    public TargetReader(final Iterable<String> targets) {
+        this(targets.iterator());
+    }
+
+    private TargetReader(final Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * By default an invalid target throws an {@link IllegalArgumentException}.
+     *
+     * @param invalidMethod receives invalid targets instead, which are then skipped
+     */
+    public TargetReader setInvalidMethod(final Consumer<String> invalidMethod) {
+        this.invalidMethod = invalidMethod;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next > last) {
+            if (tokens.isEmpty()) {
+                if (!lines.hasNext()) {
+                    return false;
+                }
+
+                String line = lines.next();
+                final int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                Arrays.stream(line.split("[\\s,]+"))
+                        .filter(token -> !token.isEmpty())
+                        .forEach(tokens::add);
+                continue;
+            }
+
+            expand(tokens.poll());
+        }
+        return true;
+    }
+
+    @Override
+    public IPv4Address next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return new IPv4Address(next++);
+    }
+
+    /**
+     * Sets the block of addresses to return next from a single target.
+     */
+    private void expand(final String token) {
+        if (IPv4AddressBlock.matchesCIDRNotation(token)) {
+            final String[] parts = token.split("[/\\\\]");
+            final int length = Integer.parseInt(parts[1]);
+            if (length <= 32) {
+                final long mask = (MAX_DECIMAL << (32 - length)) & MAX_DECIMAL;
+                next = IPv4Address.convertIPv4ToDecimal(parts[0]) & mask;
+                last = next + (1L << (32 - length)) - 1;
+                return;
+            }
+        } else if (token.indexOf('-') > 0) {
+            final String[] parts = token.split("-", 2);
+            if (IPv4Address.matchesIPv4Pattern(parts[0]) && IPv4Address.matchesIPv4Pattern(parts[1])) {
+                final long first = IPv4Address.convertIPv4ToDecimal(parts[0]) & MAX_DECIMAL;
+                final long second = IPv4Address.convertIPv4ToDecimal(parts[1]) & MAX_DECIMAL;
+                next = Math.min(first, second);
+                last = Math.max(first, second);
+                return;
+            }
+        } else if (IPv4Address.matchesIPv4Pattern(token)) {
+            next = IPv4Address.convertIPv4ToDecimal(token) & MAX_DECIMAL;
+            last = next;
+            return;
+        }
+
+        invalidMethod.accept(token);
+    }
+
+}
@@ -0,0 +1,65 @@
+package io.mattw.jports;
+
+/**
+ * Bounded first in, first out queue of IPv6 address:ports held in primitive arrays, so queueing targets
+ * does not allocate. Safe for any number of threads on either end.
+ */
+class TargetRing {
+
+    private final long[] highs;
+    private final long[] lows;
+    private final int[] ports;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity targets held at most
+     */
+    TargetRing(final int capacity) {
+        this.highs = new long[Math.max(1, capacity)];
+        this.lows = new long[highs.length];
+        this.ports = new int[highs.length];
+    }
+
+    /**
+     * @return false when full
+     */
+    synchronized boolean offer(final long high, final long low, final int port) {
+        if (size == highs.length) {
+            return false;
+        }
+
+        final int tail = (head + size) % highs.length;
+        highs[tail] = high;
+        lows[tail] = low;
+        ports[tail] = port;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param into receives the upper bits, lower bits and port
+     * @return false when empty
+     */
+    synchronized boolean poll(final long[] into) {
+        if (size == 0) {
+            return false;
+        }
+
+        into[0] = highs[head];
+        into[1] = lows[head];
+        into[2] = ports[head];
+        head = (head + 1) % highs.length;
+        size--;
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    int capacity() {
+        return highs.length;
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.mattw.jports;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Certificate and session details from a TLS handshake, as found by a {@link TlsInspector}.
+ * The certificate is not checked for trust.
+ */
+public class TlsInfo implements Serializable {
+
+    private String subject;
+    private String issuer;
+    private List<String> subjectAlternativeNames;
+    private Instant notAfter;
+    private String protocol;
+    private String cipherSuite;
+
+    public TlsInfo(final String subject, final String issuer, final List<String> subjectAlternativeNames,
+                   final Instant notAfter, final String protocol, final String cipherSuite) {
+        this.subject = subject;
+        this.issuer = issuer;
+        this.subjectAlternativeNames = Collections.unmodifiableList(subjectAlternativeNames);
+        this.notAfter = notAfter;
+        this.protocol = protocol;
+        this.cipherSuite = cipherSuite;
+    }
+
+    /**
+     * @return distinguished name of the server certificate, e.g. CN=example.com,O=Example
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * @return DNS names and IP addresses the certificate is for
+     */
+    public List<String> getSubjectAlternativeNames() {
+        return subjectAlternativeNames;
+    }
+
+    /**
+     * @return when the certificate expires
+     */
+    public Instant getNotAfter() {
+        return notAfter;
+    }
+
+    /**
+     * @return negotiated protocol, e.g. TLSv1.3
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    @Override
+    public String toString() {
+        return subject + " " + subjectAlternativeNames + " until " + notAfter + " (" + protocol + ")";
+    }
+
+}
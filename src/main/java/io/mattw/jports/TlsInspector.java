@@ -0,0 +1,292 @@
+package io.mattw.jports;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.security.GeneralSecurityException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads the certificate of TLS services with an {@link SSLEngine} driven over non-blocking channels, so many
+ * handshakes run on a single thread, for {@link IPv4BlockPortScan#setTlsInspector(TlsInspector, Collection)}.
+ * <p>
+ * Every certificate is accepted, only its details are recorded. Outcomes are cached per address:port,
+ * including ports that did not complete a handshake.
+ */
+public class TlsInspector implements AutoCloseable {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int SAN_DNS = 2;
+    private static final int SAN_IP = 7;
+
+    private int timeout = 3000;
+    private int maxConcurrent = 256;
+    private ExpiringCache<Long, TlsInfo> cache = new ExpiringCache<>(65536, TimeUnit.MINUTES.toMillis(10));
+
+    private final Map<Long, CompletableFuture<TlsInfo>> inFlight = new ConcurrentHashMap<>();
+    private final SSLContext context;
+    private NioEngine engine;
+
+    public TlsInspector() {
+        try {
+            context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{new TrustAll()}, null);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("TLS is not available.", e);
+        }
+    }
+
+    /**
+     * @param timeout millis from connecting until the handshake has to be done, default 3000
+     */
+    public TlsInspector setTimeout(final int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Takes effect before the first inspection.
+     *
+     * @param maxConcurrent handshakes running at once, default 256
+     */
+    public TlsInspector setMaxConcurrent(final int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        return this;
+    }
+
+    /**
+     * @param maxEntries address:port kept, least recently used are evicted first, default 65536
+     * @param ttlMillis  age after which an address:port is inspected again, default 10 minutes
+     */
+    public TlsInspector setCache(final int maxEntries, final long ttlMillis) {
+        this.cache = new ExpiringCache<>(maxEntries, ttlMillis);
+        return this;
+    }
+
+    /**
+     * @return completes with the certificate details, or null when no handshake could be completed
+     */
+    public CompletableFuture<TlsInfo> inspect(final IPv4AddressPort addressPort) {
+        final long packed = addressPort.getPacked();
+        final ExpiringCache.Entry<TlsInfo> cached = cache.get(packed);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.getValue());
+        }
+
+        final CompletableFuture<TlsInfo> created = new CompletableFuture<>();
+        final CompletableFuture<TlsInfo> existing = inFlight.putIfAbsent(packed, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        final InetSocketAddress target = new InetSocketAddress(addressPort.getiPv4Address().getAddress(), addressPort.getPort());
+        final SSLEngine sslEngine = context.createSSLEngine(addressPort.getiPv4Address().getAddress(), addressPort.getPort());
+        sslEngine.setUseClientMode(true);
+
+        getEngine().submit(new HandshakeSession(target, timeout, sslEngine, info -> {
+            cache.put(packed, info);
+            inFlight.remove(packed);
+            created.complete(info);
+        }));
+        return created;
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Stops the handshake thread, handshakes still running complete with null.
+     */
+    @Override
+    public synchronized void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    private synchronized NioEngine getEngine() {
+        if (engine == null) {
+            engine = new NioEngine("jports-tls", maxConcurrent);
+        }
+        return engine;
+    }
+
+    static TlsInfo toInfo(final SSLSession session) throws SSLException {
+        final Certificate[] certificates = session.getPeerCertificates();
+        if (certificates.length == 0 || !(certificates[0] instanceof X509Certificate)) {
+            throw new SSLException("No X.509 certificate from peer.");
+        }
+
+        final X509Certificate certificate = (X509Certificate) certificates[0];
+        final List<String> names = new ArrayList<>();
+        try {
+            final Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+            if (alternativeNames != null) {
+                for (List<?> name : alternativeNames) {
+                    final int type = (Integer) name.get(0);
+                    if (type == SAN_DNS || type == SAN_IP) {
+                        names.add(String.valueOf(name.get(1)));
+                    }
+                }
+            }
+        } catch (CertificateParsingException ignored) {
+            // Keep the rest of the details.
+        }
+
+        return new TlsInfo(certificate.getSubjectX500Principal().getName(), certificate.getIssuerX500Principal().getName(),
+                names, certificate.getNotAfter().toInstant(), session.getProtocol(), session.getCipherSuite());
+    }
+
+    /**
+     * Drives a client handshake until the peer's certificate is known.
+     */
+    private static class HandshakeSession extends NioSession {
+
+        private final SSLEngine sslEngine;
+        private final Consumer<TlsInfo> done;
+        private final ByteBuffer netOut;
+        private ByteBuffer netIn;
+        private ByteBuffer appIn;
+
+        HandshakeSession(final InetSocketAddress target, final int timeout, final SSLEngine sslEngine,
+                         final Consumer<TlsInfo> done) {
+            super(target, timeout);
+            this.sslEngine = sslEngine;
+            this.done = done;
+
+            final SSLSession session = sslEngine.getSession();
+            this.netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+            this.netOut.flip();
+            this.netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+            this.appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        }
+
+        @Override
+        void connected() throws IOException {
+            sslEngine.beginHandshake();
+            drive();
+        }
+
+        @Override
+        void ready() throws IOException {
+            drive();
+        }
+
+        @Override
+        void failed(final Exception e) {
+            done.accept(null);
+        }
+
+        private void drive() throws IOException {
+            while (true) {
+                if (netOut.hasRemaining()) {
+                    channel.write(netOut);
+                    if (netOut.hasRemaining()) {
+                        interest(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                final SSLEngineResult result;
+                switch (sslEngine.getHandshakeStatus()) {
+                    case NEED_WRAP:
+                        netOut.clear();
+                        result = sslEngine.wrap(EMPTY, netOut);
+                        netOut.flip();
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED && !netOut.hasRemaining()) {
+                            throw new SSLException("Handshake closed.");
+                        }
+                        break;
+
+                    case NEED_TASK:
+                        Runnable task;
+                        while ((task = sslEngine.getDelegatedTask()) != null) {
+                            task.run();
+                        }
+                        break;
+
+                    case FINISHED:
+                    case NOT_HANDSHAKING:
+                        final TlsInfo info = toInfo(sslEngine.getSession());
+                        close();
+                        done.accept(info);
+                        return;
+
+                    default:
+                        netIn.flip();
+                        result = sslEngine.unwrap(netIn, appIn);
+                        netIn.compact();
+
+                        switch (result.getStatus()) {
+                            case BUFFER_UNDERFLOW:
+                                if (!netIn.hasRemaining()) {
+                                    netIn = grow(netIn, sslEngine.getSession().getPacketBufferSize());
+                                }
+                                final int read = channel.read(netIn);
+                                if (read < 0) {
+                                    throw new EOFException("Connection closed during handshake.");
+                                }
+                                if (read == 0) {
+                                    interest(SelectionKey.OP_READ);
+                                    return;
+                                }
+                                break;
+                            case BUFFER_OVERFLOW:
+                                // Application data is not needed, only room for it.
+                                appIn = ByteBuffer.allocate(appIn.capacity() * 2);
+                                break;
+                            case CLOSED:
+                                throw new SSLException("Handshake closed.");
+                            default:
+                                appIn.clear();
+                        }
+                }
+            }
+        }
+
+        private static ByteBuffer grow(final ByteBuffer buffer, final int size) {
+            final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() + size);
+            buffer.flip();
+            grown.put(buffer);
+            return grown;
+        }
+    }
+
+    /**
+     * Accepts every certificate, as only its details are wanted.
+     */
+    private static class TrustAll implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType) {}
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType) {}
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.mattw.jports;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Payload templates for UDP scans. UDP services usually stay silent unless sent a request
+ * they understand, so each port gets a minimal valid request of its protocol.
+ */
+public final class UdpPayloads {
+
+    /**
+     * DNS standard query for the root NS records.
+     */
+    public static final byte[] DNS = {
+            0x6a, 0x70, 0x01, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x02, 0x00, 0x01
+    };
+
+    /**
+     * NTP version 3 client request.
+     */
+    public static final byte[] NTP = ntp();
+
+    /**
+     * SNMPv1 get-request for sysDescr.0 with community "public".
+     */
+    public static final byte[] SNMP = {
+            0x30, 0x26, 0x02, 0x01, 0x00, 0x04, 0x06, 0x70, 0x75, 0x62, 0x6c, 0x69, 0x63,
+            (byte) 0xa0, 0x19, 0x02, 0x01, 0x01, 0x02, 0x01, 0x00, 0x02, 0x01, 0x00,
+            0x30, 0x0e, 0x30, 0x0c, 0x06, 0x08, 0x2b, 0x06, 0x01, 0x02, 0x01, 0x01, 0x01, 0x00, 0x05, 0x00
+    };
+
+    /**
+     * SSDP discovery for all services.
+     */
+    public static final byte[] SSDP = ("M-SEARCH * HTTP/1.1\r\n"
+            + "HOST: 239.255.255.250:1900\r\n"
+            + "MAN: \"ssdp:discover\"\r\n"
+            + "MX: 1\r\n"
+            + "ST: ssdp:all\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private UdpPayloads() {}
+
+    /**
+     * @return payloads by well known port, a new map each call so it may be modified
+     */
+    public static Map<Integer, byte[]> defaults() {
+        final Map<Integer, byte[]> payloads = new HashMap<>();
+        payloads.put(53, DNS);
+        payloads.put(123, NTP);
+        payloads.put(161, SNMP);
+        payloads.put(1900, SSDP);
+        return payloads;
+    }
+
+    private static byte[] ntp() {
+        final byte[] request = new byte[48];
+        request[0] = 0x1b; // leap indicator 0, version 3, mode 3 (client)
+        return request;
+    }
+
+}
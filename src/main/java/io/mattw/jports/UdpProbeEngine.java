@@ -0,0 +1,167 @@
+package io.mattw.jports;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.BooleanSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Single threaded, non-blocking UDP prober used by {@link IPv4BlockPortScan} in {@link Protocol#UDP} mode.
+ * <p>
+ * Probes are taken from the scan's queue in batches and sent from one unconnected {@link DatagramChannel}.
+ * Each probe is remembered in a pending table of packed address:port to send time. A datagram back from
+ * a pending target marks it {@link PortStatus#OPEN}, and targets silent past the timeout are swept out
+ * together as {@link PortStatus#FILTERED}.
+ */
+class UdpProbeEngine {
+
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+    private static final int MAX_DATAGRAM = 65535;
+
+    private final Queue<IPv4AddressPort> queue;
+    private final Map<Integer, byte[]> payloads;
+    private final int window;
+    private final int timeout;
+    private final RateLimiter rateLimiter;
+    private final BooleanSupplier producing;
+    private final BooleanSupplier shutdown;
+    private final ObjLongConsumer<PortStatus> results;
+
+    private final PackedLongMap pending;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private IPv4AddressPort unsent;
+
+    /**
+     * @param queue       probes to send
+     * @param payloads    payload per port, ports without one get an empty datagram
+     * @param window      most probes pending at once
+     * @param timeout     millis to wait for an answer
+     * @param rateLimiter paces sends, may be null
+     * @param producing   whether more probes may still arrive in the queue
+     * @param shutdown    whether to stop early
+     * @param results     receives the status and packed address:port of each completed probe
+     */
+    UdpProbeEngine(final Queue<IPv4AddressPort> queue, final Map<Integer, byte[]> payloads, final int window,
+                   final int timeout, final RateLimiter rateLimiter, final BooleanSupplier producing,
+                   final BooleanSupplier shutdown, final ObjLongConsumer<PortStatus> results) {
+        this.queue = queue;
+        this.payloads = payloads;
+        this.window = Math.max(1, window);
+        this.timeout = timeout;
+        this.rateLimiter = rateLimiter;
+        this.producing = producing;
+        this.shutdown = shutdown;
+        this.results = results;
+        this.pending = new PackedLongMap(this.window);
+    }
+
+    void run() throws IOException {
+        final long sweepInterval = Math.max(1, timeout / 10);
+        long nextSweep = System.currentTimeMillis() + sweepInterval;
+
+        try (DatagramChannel channel = DatagramChannel.open(); Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            channel.bind(null);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            while (!shutdown.getAsBoolean()) {
+                final boolean sent = sendBatch(channel);
+
+                if (!sent && unsent == null && pending.size() == 0 && queue.isEmpty() && !producing.getAsBoolean()) {
+                    break;
+                }
+
+                // Only wait for answers when there is nothing more to send right now.
+                if (sent ? selector.selectNow() > 0 : selector.select(Math.min(sweepInterval, 10)) > 0) {
+                    selector.selectedKeys().clear();
+                    receiveAll(channel);
+                }
+
+                final long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    pending.removeBelow(now - timeout, packed -> results.accept(PortStatus.FILTERED, packed));
+                    nextSweep = now + sweepInterval;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends queued probes until the window is full, the queue is empty, or the socket buffer is full.
+     *
+     * @return whether anything was sent
+     */
+    private boolean sendBatch(final DatagramChannel channel) throws IOException {
+        boolean sent = false;
+        while (pending.size() < window) {
+            final boolean retry = unsent != null;
+            final IPv4AddressPort addressPort = retry ? unsent : queue.poll();
+            unsent = null;
+            if (addressPort == null) {
+                break;
+            }
+
+            if (rateLimiter != null && !retry) {
+                rateLimiter.acquire();
+            }
+
+            final byte[] payload = payloads.getOrDefault(addressPort.getPort(), EMPTY_PAYLOAD);
+            sendBuffer.clear();
+            sendBuffer.put(payload);
+            sendBuffer.flip();
+
+            try {
+                final InetSocketAddress target = new InetSocketAddress(addressPort.getiPv4Address().getAddress(), addressPort.getPort());
+                if (channel.send(sendBuffer, target) == 0 && payload.length > 0) {
+                    unsent = addressPort;
+                    break;
+                }
+            } catch (IOException e) {
+                results.accept(IPv4BlockPortScan.classify(e), addressPort.getPacked());
+                continue;
+            }
+
+            pending.put(addressPort.getPacked(), System.currentTimeMillis());
+            sent = true;
+        }
+        return sent;
+    }
+
+    private void receiveAll(final DatagramChannel channel) throws IOException {
+        SocketAddress source;
+        while (true) {
+            receiveBuffer.clear();
+            try {
+                source = channel.receive(receiveBuffer);
+            } catch (IOException e) {
+                // An error reported for an earlier datagram, try again on the next select.
+                return;
+            }
+            if (source == null) {
+                return;
+            }
+
+            final InetSocketAddress from = (InetSocketAddress) source;
+            if (from.getAddress() instanceof Inet4Address) {
+                final long packed = IPv4AddressPort.pack(toDecimal(from.getAddress().getAddress()), from.getPort());
+                if (pending.remove(packed) != PackedLongMap.EMPTY) {
+                    results.accept(PortStatus.OPEN, packed);
+                }
+            }
+        }
+    }
+
+    static long toDecimal(final byte[] address) {
+        return ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16) | ((address[2] & 0xFFL) << 8) | (address[3] & 0xFFL);
+    }
+
+}
@@ -0,0 +1,190 @@
+package io.mattw.jports;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Runs consumer threads and replaces any that stay busy with one item past a deadline, such as a connect that
+ * ignores its timeout or a result callback that never returns. The stuck thread is interrupted and no longer
+ * waited for, and its item is handed back when it had not finished probing it.
+ * <p>
+ * Workers are busy from {@link #busy()} until {@link #idle()}. The item they probe in between is marked with
+ * {@link #begin(Object)} and claimed back with {@link #end(Object)}. Threads the watchdog did not start are not watched.
+ *
+ * @param <I> item type
+ */
+class Watchdog<I> {
+
+    private final long deadlineNanos;
+    private final Consumer<I> reclaim;
+    private final Set<Worker<I>> workers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Worker<I>> current = new ThreadLocal<>();
+    private final LongAdder abandoned = new LongAdder();
+
+    private ExecutorService service;
+    private ExecutorGroup group;
+    private Runnable loop;
+    private ScheduledExecutorService checker;
+
+    /**
+     * @param deadlineMillis time a worker may spend on one item
+     * @param reclaim        receives items taken from abandoned workers before they were probed
+     */
+    Watchdog(final long deadlineMillis, final Consumer<I> reclaim) {
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, deadlineMillis));
+        this.reclaim = reclaim;
+    }
+
+    /**
+     * Starts the workers on daemon threads, so abandoned ones never keep the JVM alive, and starts checking them.
+     *
+     * @return group to await the workers with, which stops waiting for abandoned ones
+     */
+    ExecutorGroup start(final int workerCount, final Runnable loop) {
+        this.service = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "jports-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.group = new ExecutorGroup(service, 0);
+        this.loop = loop;
+        for (int i = 0; i < workerCount; i++) {
+            addWorker();
+        }
+
+        final long period = Math.max(1, deadlineNanos / 4);
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "jports-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleAtFixedRate(this::check, period, period, TimeUnit.NANOSECONDS);
+        return group;
+    }
+
+    /**
+     * Starts one more worker, also when the thread count is raised while running.
+     */
+    void addWorker() {
+        final Worker<I> worker = new Worker<>();
+        worker.future = group.submit(() -> {
+            worker.thread = Thread.currentThread();
+            current.set(worker);
+            workers.add(worker);
+            try {
+                loop.run();
+            } finally {
+                workers.remove(worker);
+                current.remove();
+            }
+        });
+    }
+
+    /**
+     * Abandons and replaces workers busy past the deadline.
+     */
+    void check() {
+        final long now = System.nanoTime();
+        for (Worker<I> worker : workers) {
+            final long since = worker.busySince;
+            if (since == 0 || now - since < deadlineNanos || worker.abandoned) {
+                continue;
+            }
+
+            // Handed back and replaced before the group stops waiting for it, so the work is never seen as done early.
+            worker.abandoned = true;
+            workers.remove(worker);
+            final I item = worker.item.getAndSet(null);
+            if (item != null) {
+                reclaim.accept(item);
+            }
+            addWorker();
+            group.abandon(worker.future);
+            abandoned.increment();
+            worker.thread.interrupt();
+        }
+    }
+
+    /**
+     * The calling worker starts on an item, from which the deadline counts.
+     */
+    void busy() {
+        final Worker<I> worker = current.get();
+        if (worker != null) {
+            worker.busySince = System.nanoTime() | 1;
+        }
+    }
+
+    /**
+     * The calling worker starts probing its item, which is handed back if the worker is abandoned before {@link #end(Object)}.
+     */
+    void begin(final I item) {
+        final Worker<I> worker = current.get();
+        if (worker != null) {
+            worker.item.set(item);
+        }
+    }
+
+    /**
+     * The calling worker finished probing its item.
+     *
+     * @return false when the item was reclaimed by the watchdog, so its outcome should be discarded
+     */
+    boolean end(final I item) {
+        final Worker<I> worker = current.get();
+        return worker == null || worker.item.compareAndSet(item, null);
+    }
+
+    /**
+     * The calling worker is done with its item, including sending on the result.
+     */
+    void idle() {
+        final Worker<I> worker = current.get();
+        if (worker != null) {
+            worker.busySince = 0;
+        }
+    }
+
+    /**
+     * @return whether the calling worker was abandoned and replaced, so it should stop consuming
+     */
+    boolean isAbandoned() {
+        final Worker<I> worker = current.get();
+        return worker != null && worker.abandoned;
+    }
+
+    /**
+     * @return workers abandoned so far
+     */
+    long getAbandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * Stops checking, once every worker that was not abandoned is done.
+     */
+    void stop() {
+        if (checker != null) {
+            checker.shutdown();
+            service.shutdown();
+        }
+    }
+
+    private static class Worker<I> {
+
+        private final AtomicReference<I> item = new AtomicReference<>();
+        private volatile long busySince;
+        private volatile boolean abandoned;
+        private volatile Thread thread;
+        private volatile Future<?> future;
+    }
+
+}
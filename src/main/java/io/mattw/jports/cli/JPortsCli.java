@@ -0,0 +1,233 @@
+package io.mattw.jports.cli;
+
+import io.mattw.jports.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line runner around {@link IPv4BlockPortScan}.
+ * <p>
+ * Targets are read lazily through a {@link TargetReader} and each result is written as soon as it is found,
+ * so memory use stays constant no matter how many targets are scanned and output can be piped on.
+ * <pre>
+ * jports -p 80,443,8000-8100 [options] [targets...]
+ *   -p, --ports SPEC      ports to check, e.g. 22,80,8000-8100 (required)
+ *   -i, --input FILE      read targets from a file, - for stdin (default when no targets are given)
+ *   -t, --threads N       thread count, or pending probes for UDP (default 64)
+ *   -r, --rate N          maximum probes per second
+ *   -w, --timeout MS      connect timeout in milliseconds (default 300)
+ *   -f, --format FORMAT   ndjson or csv (default ndjson)
+ *   -a, --all             write every checked address:port with its status, not only open ones
+ *   -u, --udp             probe with UDP instead of TCP
+ * </pre>
+ * Targets are addresses, CIDR blocks or ranges as accepted by {@link TargetReader}.
+ */
+public final class JPortsCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = "usage: jports -p PORTS [-i FILE] [-t THREADS] [-r RATE] [-w TIMEOUT] [-f ndjson|csv] [-a] [-u] [targets...]";
+
+    private JPortsCli() {}
+
+    public static void main(final String[] args) throws InterruptedException {
+        System.exit(run(args, System.in, System.out, System.err));
+    }
+
+    /**
+     * @return process exit code
+     */
+    static int run(final String[] args, final InputStream in, final PrintStream out, final PrintStream err) throws InterruptedException {
+        Collection<Integer> ports = null;
+        String input = null;
+        int threads = 64;
+        double rate = 0;
+        int timeout = 300;
+        String format = "ndjson";
+        boolean all = false;
+        boolean udp = false;
+        final List<String> targets = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-p":
+                    case "--ports":
+                        ports = parsePorts(value(args, ++i));
+                        break;
+                    case "-i":
+                    case "--input":
+                        input = value(args, ++i);
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        if (threads < 1) {
+                            throw new IllegalArgumentException("Threads must be at least 1: " + threads);
+                        }
+                        break;
+                    case "-r":
+                    case "--rate":
+                        rate = Double.parseDouble(value(args, ++i));
+                        if (!(rate > 0) || Double.isInfinite(rate)) {
+                            throw new IllegalArgumentException("Rate must be a positive number: " + args[i]);
+                        }
+                        break;
+                    case "-w":
+                    case "--timeout":
+                        timeout = Integer.parseInt(value(args, ++i));
+                        if (timeout < 0) {
+                            throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+                        }
+                        break;
+                    case "-f":
+                    case "--format":
+                        format = value(args, ++i).toLowerCase(Locale.ROOT);
+                        if (!format.equals("ndjson") && !format.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format: " + format);
+                        }
+                        break;
+                    case "-a":
+                    case "--all":
+                        all = true;
+                        break;
+                    case "-u":
+                    case "--udp":
+                        udp = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("-") && args[i].length() > 1) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        }
+                        targets.add(args[i]);
+                }
+            }
+
+            if (ports == null) {
+                throw new IllegalArgumentException("Ports are required.");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        final TargetReader targetReader;
+        try {
+            targetReader = openTargets(targets, input, in).setInvalidMethod(token -> err.println("Skipping invalid target: " + token));
+        } catch (IOException e) {
+            err.println("Could not read targets: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        final boolean csv = format.equals("csv");
+        if (csv) {
+            writer.print("address,port,status\n");
+        }
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(targetReader)
+                .setPorts(ports)
+                .setThreadCount(threads)
+                // No UI to keep responsive, so only the thread count and rate limit pace the scan.
+                .setLoopDelay(0)
+                .setCheckTimeout(timeout)
+                .setProtocol(udp ? Protocol.UDP : Protocol.TCP)
+                .setConsumeAllStatuses(all)
+                .setConsumingMethod(addressPort -> {
+                    final String line = csv ? toCsv(addressPort) : toJson(addressPort);
+                    synchronized (writer) {
+                        writer.print(line);
+                        writer.print('\n');
+                    }
+                })
+                .setProgressListener(progress -> {
+                    synchronized (writer) {
+                        writer.flush();
+                    }
+                }, 1000);
+        if (rate > 0) {
+            scan.setRateLimit(rate);
+        }
+
+        scan.executeAndAwait();
+
+        synchronized (writer) {
+            writer.flush();
+        }
+        return EXIT_OK;
+    }
+
+    private static String value(final String[] args, final int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private static TargetReader openTargets(final List<String> targets, final String input, final InputStream in) throws IOException {
+        if (input == null && !targets.isEmpty()) {
+            return new TargetReader(targets);
+        }
+
+        final InputStream source = input == null || input.equals("-") ? in : Files.newInputStream(Paths.get(input));
+        return new TargetReader(new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param spec comma separated ports and inclusive ranges, e.g. 22,80,8000-8100
+     */
+    static Collection<Integer> parsePorts(final String spec) {
+        final Collection<Integer> ports = new LinkedHashSet<>();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            final String[] range = part.split("-", 2);
+            try {
+                final int first = Integer.parseInt(range[0].trim());
+                final int last = range.length == 2 ? Integer.parseInt(range[1].trim()) : first;
+                if (first < 0 || last > 65535 || first > last) {
+                    throw new IllegalArgumentException("Invalid port range: " + part);
+                }
+                for (int port = first; port <= last; port++) {
+                    ports.add(port);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid port: " + part);
+            }
+        }
+
+        if (ports.isEmpty()) {
+            throw new IllegalArgumentException("Ports list should not be empty.");
+        }
+        return ports;
+    }
+
+    static String toJson(final IPv4AddressPort addressPort) {
+        final StringBuilder json = new StringBuilder(64)
+                .append("{\"address\":\"").append(addressPort.getiPv4Address().getAddress())
+                .append("\",\"port\":").append(addressPort.getPort());
+        if (addressPort.getStatus() != null) {
+            json.append(",\"status\":\"").append(addressPort.getStatus()).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    static String toCsv(final IPv4AddressPort addressPort) {
+        return addressPort.getiPv4Address().getAddress() + "," + addressPort.getPort() + ","
+                + (addressPort.getStatus() != null ? addressPort.getStatus() : "");
+    }
+
+}
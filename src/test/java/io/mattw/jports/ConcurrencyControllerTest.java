@@ -0,0 +1,79 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyControllerTest {
+
+    private ConcurrencyController controller;
+
+    /**
+     * Completes probes, waits out the interval, and completes one more to trigger an adjustment.
+     */
+    private void interval(final int probes, final int timedOut) throws InterruptedException {
+        for (int i = 0; i < probes; i++) {
+            controller.acquire();
+            controller.release(i < timedOut);
+        }
+
+        Thread.sleep(15);
+        controller.acquire();
+        controller.release(false);
+    }
+
+    @Test
+    public void testWindow_grows() throws InterruptedException {
+        controller = new ConcurrencyController(4, 64).setIntervalMillis(10).setIncrement(4);
+
+        for (int i = 0; i < 5; i++) {
+            interval(100, 0);
+        }
+
+        assertTrue(controller.getWindow() > 4);
+        assertTrue(controller.getWindow() <= 64);
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testWindow_backsOff() throws InterruptedException {
+        controller = new ConcurrencyController(4, 64).setIntervalMillis(10).setIncrement(16);
+        for (int i = 0; i < 4; i++) {
+            interval(100, 0);
+        }
+        final int grown = controller.getWindow();
+
+        interval(100, 50);
+
+        assertTrue(controller.getWindow() < grown);
+        assertTrue(controller.getWindow() >= 4);
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquire_interrupted() throws InterruptedException {
+        controller = new ConcurrencyController(1, 1);
+        assertTrue(controller.acquire());
+
+        final boolean[] outcome = new boolean[2];
+        final Thread waiter = new Thread(() -> {
+            outcome[0] = controller.acquire();
+            outcome[1] = Thread.currentThread().isInterrupted();
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        waiter.interrupt();
+        waiter.join();
+
+        assertFalse(outcome[0]);
+        assertTrue(outcome[1]);
+        assertEquals(1, controller.getInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWindow_invalidBounds() {
+        new ConcurrencyController(8, 4);
+    }
+
+}
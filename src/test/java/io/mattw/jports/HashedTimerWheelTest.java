@@ -0,0 +1,83 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashedTimerWheelTest {
+
+    @Test
+    public void test_expiresInOrder() throws InterruptedException {
+        final List<String> expired = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        // Small wheel so the longest delay has to go around more than once.
+        final HashedTimerWheel<String> wheel = new HashedTimerWheel<>(5, 4, item -> {
+            expired.add(item);
+            latch.countDown();
+        });
+
+        final long start = System.nanoTime();
+        wheel.schedule("late", 120);
+        wheel.schedule("early", 10);
+        wheel.schedule("middle", 50);
+        assertEquals(3, wheel.size());
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 120);
+        assertEquals(Arrays.asList("early", "middle", "late"), expired);
+        assertEquals(0, wheel.size());
+        wheel.stop();
+    }
+
+    @Test
+    public void test_neverExpiresEarly() throws InterruptedException {
+        final int count = 20;
+        final long[] scheduledAt = new long[count];
+        final List<Long> early = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(count);
+        final HashedTimerWheel<Integer> wheel = new HashedTimerWheel<>(20, 4, index -> {
+            final long waited = System.nanoTime() - scheduledAt[index];
+            if (waited < TimeUnit.MILLISECONDS.toNanos(20)) {
+                early.add(waited);
+            }
+            latch.countDown();
+        });
+
+        // Single tick delays scheduled at different points within a tick.
+        for (int i = 0; i < count; i++) {
+            scheduledAt[i] = System.nanoTime();
+            wheel.schedule(i, 20);
+            Thread.sleep(7);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), early);
+        wheel.stop();
+    }
+
+    @Test
+    public void test_scheduleFromCallback() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final AtomicReference<HashedTimerWheel<Integer>> wheel = new AtomicReference<>();
+        wheel.set(new HashedTimerWheel<>(5, 8, attempt -> {
+            latch.countDown();
+            if (attempt < 3) {
+                wheel.get().schedule(attempt + 1, 5);
+            }
+        }));
+
+        wheel.get().schedule(1, 5);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        wheel.get().stop();
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpFingerprinterTest {
+
+    private final List<ServerSocket> servers = new ArrayList<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Answers every connection with the response, then holds it open until the client closes.
+     */
+    private int serve(final String response) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        servers.add(server);
+        final Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    final Socket socket = server.accept();
+                    new Thread(() -> {
+                        try (Socket connection = socket) {
+                            final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+                            final StringBuilder request = new StringBuilder();
+                            String line;
+                            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                                request.append(line).append('\n');
+                            }
+                            requests.add(request.toString());
+                            connection.getOutputStream().write(response.getBytes(StandardCharsets.UTF_8));
+                            connection.getOutputStream().flush();
+                            connection.getInputStream().read();
+                        } catch (IOException ignored) {}
+                    }).start();
+                } catch (IOException ignored) {}
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server.getLocalPort();
+    }
+
+    @After
+    public void stopServers() throws IOException {
+        for (ServerSocket server : servers) {
+            server.close();
+        }
+    }
+
+    private IPv4AddressPort target(final int port) {
+        return new IPv4AddressPort(new IPv4Address("127.0.0.1"), port);
+    }
+
+    private static String page(final int bodyPadding) {
+        final StringBuilder body = new StringBuilder("<html><head>");
+        for (int i = 0; i < bodyPadding; i++) {
+            body.append("<meta name=\"x\">");
+        }
+        body.append("<TITLE>\n  Router &amp; Login </TITLE></head><body>hello</body></html>");
+        return "HTTP/1.1 200 OK\r\nServer: stub/1.0\r\nContent-Type: text/html\r\nX-Other: ignored\r\n"
+                + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+    }
+
+    @Test
+    public void test_fingerprint() throws IOException {
+        final int port = serve(page(0));
+
+        // The server keeps the connection open, the title ends the read.
+        try (HttpFingerprinter fingerprinter = new HttpFingerprinter().setTimeout(5000)) {
+            final long start = System.currentTimeMillis();
+            final HttpInfo info = fingerprinter.fingerprint(target(port)).join();
+            assertTrue(System.currentTimeMillis() - start < 4000);
+
+            assertEquals("HTTP/1.1", info.getVersion());
+            assertEquals(200, info.getStatusCode());
+            assertEquals("OK", info.getReason());
+            assertEquals("stub/1.0", info.getHeader("Server"));
+            assertEquals("text/html", info.getHeader("content-type"));
+            assertNull(info.getHeader("X-Other"));
+            assertEquals("Router & Login", info.getTitle());
+        }
+
+        assertTrue(requests.get(0).startsWith("GET / HTTP/1.1\nHost: 127.0.0.1:" + port + "\n"));
+    }
+
+    @Test
+    public void test_boundedPrefix() throws IOException {
+        final int port = serve(page(1000));
+
+        try (HttpFingerprinter fingerprinter = new HttpFingerprinter().setMaxBytes(1024).setHeaders("X-Other")) {
+            final HttpInfo info = fingerprinter.fingerprint(target(port)).join();
+
+            assertEquals(200, info.getStatusCode());
+            assertEquals(Collections.singletonMap("x-other", "ignored"), info.getHeaders());
+            // The title is past the part of the body read.
+            assertNull(info.getTitle());
+        }
+    }
+
+    @Test
+    public void test_notHttp() throws IOException {
+        final int ssh = serve("SSH-2.0-OpenSSH_9.0\r\n");
+
+        try (HttpFingerprinter fingerprinter = new HttpFingerprinter().setTimeout(300)) {
+            assertNull(fingerprinter.fingerprint(target(ssh)).join());
+        }
+    }
+
+    @Test
+    public void test_concurrent() throws IOException {
+        final int port = serve("HTTP/1.0 302 Found\r\nLocation: /login\r\n\r\n");
+
+        try (HttpFingerprinter fingerprinter = new HttpFingerprinter().setMaxConcurrent(3).setTimeout(300)) {
+            final List<CompletableFuture<HttpInfo>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                futures.add(fingerprinter.fingerprint(target(port)));
+            }
+            for (CompletableFuture<HttpInfo> future : futures) {
+                final HttpInfo info = future.join();
+                assertEquals(302, info.getStatusCode());
+                assertEquals("/login", info.getHeader("Location"));
+            }
+        }
+    }
+
+    @Test
+    public void test_parse() {
+        final byte[] response = "HTTP/1.1 404\nserver: a\nServer: b\n".getBytes(StandardCharsets.US_ASCII);
+        final HttpInfo info = HttpFingerprinter.parse(response, response.length, new HashSet<>(Arrays.asList("server")));
+
+        assertEquals(404, info.getStatusCode());
+        assertEquals("", info.getReason());
+        assertEquals("a", info.getHeader("Server"));
+        assertNull(HttpFingerprinter.parse(response, 4, Collections.emptySet()));
+    }
+
+    @Test
+    public void test_scanHttpInfo() throws Exception {
+        final int web = serve(page(0));
+        final int other = serve("SSH-2.0-OpenSSH_9.0\r\n");
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (HttpFingerprinter fingerprinter = new HttpFingerprinter()) {
+            new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Arrays.asList(web, other))
+                    .setHttpFingerprinter(fingerprinter, Collections.singletonList(web))
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(2, results.size());
+        for (IPv4AddressPort result : results) {
+            if (result.getPort() == web) {
+                assertEquals("Router & Login", result.getHttpInfo().getTitle());
+            } else {
+                assertNull(result.getHttpInfo());
+            }
+        }
+    }
+
+}
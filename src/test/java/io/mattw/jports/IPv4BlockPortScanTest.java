@@ -5,8 +5,28 @@ import io.mattw.jports.IPv4AddressPort;
 import io.mattw.jports.IPv4BlockPortScan;
 import org.junit.Test;
 
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.NoRouteToHostException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class IPv4BlockPortScanTest {
 
@@ -30,4 +50,763 @@ public class IPv4BlockPortScanTest {
                 .executeAndAwait();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void test_sourceAddressPool() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        final SourceAddressPool pool = new SourceAddressPool(Arrays.asList("127.0.0.1", "127.0.0.2"));
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            blockScan = new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Collections.singletonList(server.getLocalPort()))
+                    .setSourceAddressPool(pool)
+                    .setAbortiveClose(true)
+                    .setReuseAddress(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(1, results.size());
+        assertEquals(InetAddress.getByName("127.0.0.2"), pool.next());
+    }
+
+    @Test
+    public void test_consumeAllStatuses() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        final int closedPort;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = closed.getLocalPort();
+        }
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            blockScan = new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Arrays.asList(server.getLocalPort(), closedPort))
+                    .setConsumeAllStatuses(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(2, results.size());
+        for (IPv4AddressPort result : results) {
+            assertEquals(result.getPort() == closedPort ? PortStatus.CLOSED : PortStatus.OPEN, result.getStatus());
+        }
+    }
+
+    @Test
+    public void test_classify() {
+        assertEquals(PortStatus.CLOSED, IPv4BlockPortScan.classify(new ConnectException("Connection refused")));
+        assertEquals(PortStatus.UNREACHABLE, IPv4BlockPortScan.classify(new ConnectException("Network is unreachable")));
+        assertEquals(PortStatus.UNREACHABLE, IPv4BlockPortScan.classify(new NoRouteToHostException("Host is unreachable")));
+        assertEquals(PortStatus.FILTERED, IPv4BlockPortScan.classify(new SocketTimeoutException("connect timed out")));
+    }
+
+    @Test
+    public void test_progressListener() throws Exception {
+        final List<ScanProgress> snapshots = Collections.synchronizedList(new ArrayList<>());
+
+        blockScan = new IPv4BlockPortScan(new IPv4AddressBlock("127.0.0.0/28"))
+                .setPorts(ports)
+                .setThreadCount(threadCount)
+                .setCheckPortOpen(false)
+                .setConsumingMethod(addressPort -> {})
+                .setProgressListener(snapshots::add, 50)
+                .executeAndAwait();
+
+        final ScanProgress last = snapshots.get(snapshots.size() - 1);
+        assertTrue(last.isFinished());
+        assertEquals(16 * ports.size(), last.getTotal());
+        assertEquals(last.getTotal(), last.getCompleted());
+        assertEquals(0, last.getRemaining());
+    }
+
+    @Test(timeout = 10000)
+    public void test_progressListener_throws() throws Exception {
+        final List<ScanProgress> snapshots = Collections.synchronizedList(new ArrayList<>());
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        final AtomicInteger reported = new AtomicInteger();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.incrementAndGet());
+
+        try {
+            blockScan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/28"))
+                    .setPorts(ports)
+                    .setThreadCount(4)
+                    .setProber((addressPort, timeout) -> {
+                        sleep(10);
+                        return PortStatus.CLOSED;
+                    })
+                    .setConsumingMethod(addressPort -> {})
+                    .setProgressListener(progress -> {
+                        snapshots.add(progress);
+                        throw new IllegalStateException("listener failed");
+                    }, 10)
+                    .executeAndAwait();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+
+        assertTrue(snapshots.size() > 1);
+        assertTrue(snapshots.get(snapshots.size() - 1).isFinished());
+        assertEquals(snapshots.size(), reported.get());
+    }
+
+    @Test
+    public void test_hostInterleave() throws Exception {
+        final List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+        blockScan = new IPv4BlockPortScan(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4"))
+                .setPorts(Arrays.asList(1, 2, 3))
+                .setThreadCount(1)
+                .setCheckPortOpen(false)
+                .setHostInterleave(2)
+                .setConsumingMethod(addressPort -> results.add(addressPort.getFullAddress()))
+                .executeAndAwait();
+
+        assertEquals(Arrays.asList(
+                "10.0.0.1:1", "10.0.0.2:1", "10.0.0.1:2", "10.0.0.2:2", "10.0.0.1:3", "10.0.0.2:3",
+                "10.0.0.3:1", "10.0.0.4:1", "10.0.0.3:2", "10.0.0.4:2", "10.0.0.3:3", "10.0.0.4:3"), results);
+    }
+
+    @Test
+    public void test_maxProbesPerHost() throws Exception {
+        final HostLimiter limiter = new HostLimiter(2);
+        assertTrue(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(1));
+        assertFalse(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(2));
+        limiter.release(1);
+        assertEquals(1, limiter.getInFlight(1));
+        assertTrue(limiter.tryAcquire(1));
+        limiter.release(1);
+        limiter.release(1);
+        limiter.release(2);
+        assertEquals(0, limiter.getInFlight(1));
+
+        final List<String> hosts = Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.0.4");
+        final List<Integer> scanPorts = new ArrayList<>();
+        for (int port = 1; port <= 40; port++) {
+            scanPorts.add(port);
+        }
+
+        for (boolean async : new boolean[]{false, true}) {
+            final SimulatedNetwork network = new SimulatedNetwork().setSeed(35).setOpenDensity(0.2).setLatency(100, 2000);
+            final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+            final AtomicInteger maxInFlight = new AtomicInteger();
+            final Consumer<IPv4AddressPort> begin = addressPort -> maxInFlight.accumulateAndGet(inFlight
+                    .computeIfAbsent(addressPort.getiPv4Address().getDecimal(), decimal -> new AtomicInteger())
+                    .incrementAndGet(), Math::max);
+            final Consumer<IPv4AddressPort> end = addressPort -> inFlight.get(addressPort.getiPv4Address().getDecimal()).decrementAndGet();
+
+            // Counted in flight until the scan sees the outcome, which is when it frees the host's slot.
+            final Prober prober = async
+                    ? (AsyncProber) (addressPort, timeout) -> {
+                        begin.accept(addressPort);
+                        return network.probeAsync(addressPort, timeout).whenComplete((status, error) -> end.accept(addressPort));
+                    }
+                    : (addressPort, timeout) -> {
+                        begin.accept(addressPort);
+                        try {
+                            return network.probe(addressPort, timeout);
+                        } finally {
+                            end.accept(addressPort);
+                        }
+                    };
+
+            final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+            blockScan = new IPv4BlockPortScan(hosts)
+                    .setPorts(scanPorts)
+                    .setThreadCount(16)
+                    .setLoopDelay(0)
+                    .setHostInterleave(2)
+                    .setMaxProbesPerHost(1)
+                    .setProber(prober)
+                    .setConsumeAllStatuses(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+
+            assertEquals(hosts.size() * scanPorts.size(), results.size());
+            assertEquals(hosts.size() * scanPorts.size(), network.getProbeCount());
+            assertEquals(1, maxInFlight.get());
+        }
+    }
+
+    @Test
+    public void test_retryPolicy() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        final ProbeCache cache = new ProbeCache(16, 60_000);
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            // The first check finds a stale time out in the cache, the retry has to reach the open port.
+            final IPv4AddressPort cached = new IPv4AddressPort("127.0.0.1", server.getLocalPort());
+            cache.put(cached, PortStatus.FILTERED);
+
+            blockScan = new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Collections.singletonList(server.getLocalPort()))
+                    .setResultCache(cache)
+                    .setRetryPolicy(2, 20)
+                    .setConsumeAllStatuses(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+
+            assertEquals(PortStatus.OPEN, cache.get(cached));
+        }
+
+        assertEquals(1, results.size());
+        assertEquals(PortStatus.OPEN, results.get(0).getStatus());
+        assertEquals(1, results.get(0).getRetries());
+    }
+
+    @Test
+    public void test_stageListener() throws Exception {
+        final StageTimings timings = new StageTimings();
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final List<Integer> scanPorts = new ArrayList<>(ports);
+            scanPorts.add(server.getLocalPort());
+
+            blockScan = new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(scanPorts)
+                    .setThreadCount(4)
+                    .setStageListener(timings)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        final int items = ports.size() + 1;
+        assertEquals(items, timings.getCount(ScanStage.OFFER));
+        assertEquals(items, timings.getCount(ScanStage.QUEUE));
+        assertEquals(items, timings.getCount(ScanStage.DISPATCH));
+        assertEquals(items, timings.getCount(ScanStage.PROBE));
+        assertEquals(results.size(), timings.getCount(ScanStage.CONSUME));
+        assertTrue(timings.getTotal(ScanStage.PROBE).toNanos() > 0);
+        assertTrue(timings.getMax(ScanStage.PROBE).compareTo(timings.getAverage(ScanStage.PROBE)) >= 0);
+    }
+
+    @Test
+    public void test_orderedResults() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/22");
+        final List<Integer> ports = Arrays.asList(22, 80, 443);
+
+        for (int threads : new int[]{8, 128}) {
+            // Async probes with varied latency and retried losses finish far out of order.
+            final SimulatedNetwork network = new SimulatedNetwork()
+                    .setSeed(threads)
+                    .setOpenDensity(0.3)
+                    .setLatency(10, 3000)
+                    .setLossRate(0.05);
+            final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+            new IPv4BlockPortScan(block)
+                    .setPorts(ports)
+                    .setThreadCount(threads)
+                    .setLoopDelay(0)
+                    .setCheckTimeout(5)
+                    .setRetryPolicy(10, 1)
+                    .setProber(network)
+                    .setOrderedResults(32)
+                    .setResultThreadCount(threads == 8 ? 1 : 0)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+
+            int expected = 0;
+            IPv4Address address = block.getFirstAddress();
+            do {
+                for (int port : ports) {
+                    if (network.isOpen(new IPv4AddressPort(address, port))) {
+                        expected++;
+                    }
+                }
+                address = address.nextAddress();
+            } while (address.getDecimal() < block.getLastAddress().getDecimal());
+
+            assertEquals(expected, results.size());
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).getPacked() < results.get(i).getPacked());
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_orderedResults_resultThreads() {
+        new IPv4BlockPortScan(new IPv4Address("127.0.0.1"), ScanMethod.SINGLE_ADDRESS)
+                .setPorts(Collections.singletonList(80))
+                .setOrderedResults(16)
+                .setResultThreadCount(2)
+                .setConsumingMethod(addressPort -> {})
+                .execute();
+    }
+
+    @Test
+    public void test_firstOpenPerHost() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/24");
+        final List<Integer> ports = new ArrayList<>();
+        for (int port = 1; port <= 40; port++) {
+            ports.add(port);
+        }
+
+        for (boolean async : new boolean[]{false, true}) {
+            final SimulatedNetwork network = new SimulatedNetwork().setSeed(47).setOpenDensity(0.2).setLatency(100, 2000);
+            final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+            new IPv4BlockPortScan(block)
+                    .setPorts(ports)
+                    .setThreadCount(16)
+                    .setLoopDelay(0)
+                    .setProber(async ? network : network::probe)
+                    .setMaxProbesPerHost(2)
+                    .setFirstOpenPerHost(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+
+            int hostsOpen = 0;
+            IPv4Address address = block.getFirstAddress();
+            do {
+                for (int port : ports) {
+                    if (network.isOpen(new IPv4AddressPort(address, port))) {
+                        hostsOpen++;
+                        break;
+                    }
+                }
+                address = address.nextAddress();
+            } while (address.getDecimal() < block.getLastAddress().getDecimal());
+
+            final List<Long> hosts = new ArrayList<>();
+            for (IPv4AddressPort result : results) {
+                hosts.add(result.getiPv4Address().getDecimal());
+            }
+            assertEquals(hostsOpen, results.size());
+            assertEquals(hostsOpen, new HashSet<>(hosts).size());
+            // Few probes are spent past the first open port when each host gets only a couple at once.
+            assertTrue(network.getProbeCount() < block.getSize() * ports.size() / 4);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_firstOpenPerHost_diffSnapshotRejected() {
+        new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/24"))
+                .setPorts(Arrays.asList(80, 443))
+                .setProber(new SimulatedNetwork())
+                .setFirstOpenPerHost(true)
+                .setDiffSnapshot(new ScanSnapshot())
+                .setChangeMethod(change -> {})
+                .execute();
+    }
+
+    @Test
+    public void test_resultLimit() throws InterruptedException {
+        final SimulatedNetwork network = new SimulatedNetwork().setSeed(47).setOpenDensity(0.3);
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/16"))
+                .setPorts(Arrays.asList(80, 443))
+                .setThreadCount(16)
+                .setLoopDelay(0)
+                .setProber(network)
+                .setOrderedResults(64)
+                .setResultLimit(100)
+                .setConsumingMethod(results::add)
+                .executeAndAwait();
+
+        assertEquals(100, results.size());
+        assertTrue(network.getProbeCount() < 10000);
+
+        // Ordered, so these are the first 100 open in the block.
+        int found = 0;
+        for (long decimal = new IPv4Address("10.0.0.0").getDecimal(); found < 100; decimal++) {
+            for (int port : Arrays.asList(80, 443)) {
+                final IPv4AddressPort addressPort = new IPv4AddressPort(new IPv4Address(decimal), port);
+                if (found < 100 && network.isOpen(addressPort)) {
+                    assertEquals(addressPort.getPacked(), results.get(found++).getPacked());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_resultStage() throws Exception {
+        final List<String> results = Collections.synchronizedList(new ArrayList<>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        blockScan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/29"))
+                .setPorts(ports)
+                .setThreadCount(4)
+                .setCheckPortOpen(false)
+                .setResultThreadCount(4)
+                .setResultQueueSize(8)
+                .setConsumingMethod(addressPort -> {
+                    threads.add(Thread.currentThread().getName());
+                    sleep(5);
+                    results.add(addressPort.getFullAddress());
+                })
+                .executeAndAwait();
+
+        // Every result is handled before await returns, on result threads only.
+        assertEquals(8 * ports.size(), results.size());
+        assertEquals(4, threads.stream().distinct().count());
+        assertEquals(0, blockScan.getDroppedResults());
+    }
+
+    @Test
+    public void test_resultStage_drop() throws Exception {
+        final List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+        blockScan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/29"))
+                .setPorts(ports)
+                .setThreadCount(4)
+                .setCheckPortOpen(false)
+                .setResultThreadCount(1)
+                .setResultQueueSize(1)
+                .setResultBackpressure(ResultBackpressure.DROP)
+                .setConsumingMethod(addressPort -> {
+                    sleep(50);
+                    results.add(addressPort.getFullAddress());
+                })
+                .executeAndAwait();
+
+        assertTrue(blockScan.getDroppedResults() > 0);
+        assertEquals(8 * ports.size(), results.size() + blockScan.getDroppedResults());
+    }
+
+    @Test
+    public void test_hostResultMethod() throws Exception {
+        final List<HostResult> openHosts = Collections.synchronizedList(new ArrayList<>());
+        final List<HostResult> allHosts = Collections.synchronizedList(new ArrayList<>());
+        final int closedPort;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = closed.getLocalPort();
+        }
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final List<Integer> scanPorts = Arrays.asList(closedPort, server.getLocalPort());
+            final List<String> hosts = Arrays.asList("127.0.0.1", "127.0.0.2", "127.0.0.3");
+
+            new IPv4BlockPortScan(hosts)
+                    .setPorts(scanPorts)
+                    .setThreadCount(4)
+                    .setHostInterleave(2)
+                    .setHostResultMethod(openHosts::add)
+                    .executeAndAwait();
+
+            new IPv4BlockPortScan(hosts)
+                    .setPorts(scanPorts)
+                    .setThreadCount(4)
+                    .setConsumeAllStatuses(true)
+                    .setHostResultMethod(allHosts::add)
+                    .executeAndAwait();
+
+            assertEquals(1, openHosts.size());
+            assertEquals("127.0.0.1", openHosts.get(0).getAddress().getAddress());
+            assertEquals(Collections.singletonList(server.getLocalPort()), openHosts.get(0).getOpenPorts());
+            assertEquals(PortStatus.CLOSED, openHosts.get(0).getStatuses().get(closedPort));
+            assertEquals(scanPorts, new ArrayList<>(openHosts.get(0).getStatuses().keySet()));
+        }
+
+        assertEquals(3, allHosts.size());
+        for (HostResult host : allHosts) {
+            assertEquals(2, host.getStatuses().size());
+        }
+    }
+
+    @Test
+    public void test_watchdog() throws InterruptedException {
+        final IPv4AddressPort stuck = new IPv4AddressPort("10.0.0.5", 80);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Set<Long> probed = ConcurrentHashMap.newKeySet();
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/28"))
+                .setPorts(Arrays.asList(80, 443))
+                .setThreadCount(4)
+                .setLoopDelay(0)
+                .setProber((addressPort, timeout) -> {
+                    probed.add(addressPort.getPacked());
+                    if (addressPort.getPacked() == stuck.getPacked() && addressPort.getRequeues() == 0) {
+                        // Ignores interrupts, like a connect that hangs past its timeout.
+                        awaitUninterruptibly(release);
+                    }
+                    return addressPort.getPort() == 80 ? PortStatus.OPEN : PortStatus.CLOSED;
+                })
+                .setWatchdog(200, 1)
+                .setConsumeAllStatuses(true)
+                .setConsumingMethod(results::add);
+
+        try {
+            final long start = System.nanoTime();
+            scan.executeAndAwait();
+            assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        } finally {
+            release.countDown();
+        }
+        sleep(100);
+
+        final Set<Long> delivered = new HashSet<>();
+        for (IPv4AddressPort result : results) {
+            assertTrue(delivered.add(result.getPacked()));
+            if (result.getPacked() == stuck.getPacked()) {
+                assertEquals(PortStatus.OPEN, result.getStatus());
+                assertEquals(1, result.getRequeues());
+            }
+        }
+        assertEquals(probed, delivered);
+        assertEquals(1, scan.getAbandonedThreads());
+    }
+
+    @Test
+    public void test_watchdog_requeueLimit() throws InterruptedException {
+        final IPv4AddressPort stuck = new IPv4AddressPort("10.0.0.5", 80);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger hungCallbacks = new AtomicInteger();
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/28"))
+                .setPorts(Arrays.asList(80, 443))
+                .setThreadCount(4)
+                .setLoopDelay(0)
+                .setProber((addressPort, timeout) -> {
+                    if (addressPort.getPacked() == stuck.getPacked()) {
+                        awaitUninterruptibly(release);
+                    }
+                    return PortStatus.CLOSED;
+                })
+                .setWatchdog(200, 1)
+                .setConsumeAllStatuses(true)
+                .setConsumingMethod(addressPort -> {
+                    results.add(addressPort);
+                    // A callback stuck on its result is replaced too, without checking the address:port again.
+                    if (addressPort.getPort() == 443 && hungCallbacks.getAndIncrement() == 0) {
+                        awaitUninterruptibly(release);
+                    }
+                });
+
+        try {
+            scan.executeAndAwait();
+        } finally {
+            release.countDown();
+        }
+
+        final Set<Long> delivered = new HashSet<>();
+        for (IPv4AddressPort result : results) {
+            assertTrue(delivered.add(result.getPacked()));
+        }
+        final IPv4AddressPort gaveUp = results.stream().filter(result -> result.getPacked() == stuck.getPacked()).findFirst().get();
+        assertEquals(PortStatus.FILTERED, gaveUp.getStatus());
+        assertEquals(2, gaveUp.getRequeues());
+        assertEquals(3, scan.getAbandonedThreads());
+    }
+
+    @Test
+    public void test_diffSnapshot_resultThreads() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/24");
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        final SimulatedNetwork before = new SimulatedNetwork().setSeed(1).setOpenDensity(0.3);
+        final SimulatedNetwork after = new SimulatedNetwork().setSeed(2).setOpenDensity(0.3);
+
+        final List<PortChange> first = diffScan(block, snapshot, before);
+        assertTrue(first.stream().allMatch(change -> change.getType() == PortChange.Type.OPENED));
+        assertEquals(countOpen(block, before), first.size());
+
+        // Results still queued for the slow result threads when probing ends must not be reported closed.
+        assertTrue(diffScan(block, snapshot, before).isEmpty());
+
+        final List<PortChange> changes = diffScan(block, snapshot, after);
+        final Set<Long> changed = new HashSet<>();
+        for (PortChange change : changes) {
+            assertTrue(changed.add(change.getAddressPort().getPacked()));
+            final boolean wasOpen = before.isOpen(change.getAddressPort());
+            final boolean isOpen = after.isOpen(change.getAddressPort());
+            assertEquals(change.getType() == PortChange.Type.OPENED, !wasOpen && isOpen);
+            assertEquals(change.getType() == PortChange.Type.CLOSED, wasOpen && !isOpen);
+        }
+        assertEquals(countOpen(block, after), snapshot.size());
+    }
+
+    @Test
+    public void test_diffSnapshot_afterStoppedScan() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/24");
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        final SimulatedNetwork before = new SimulatedNetwork().setSeed(1).setOpenDensity(0.3);
+        diffScan(block, snapshot, before);
+
+        // What a stopped scan saw open must not hide closures from the next one.
+        final AtomicInteger results = new AtomicInteger();
+        final IPv4BlockPortScan stopped = new IPv4BlockPortScan(block)
+                .setPorts(Arrays.asList(80, 443))
+                .setLoopDelay(0)
+                .setProber(before)
+                .setDiffSnapshot(snapshot)
+                .setChangeMethod(change -> {});
+        stopped.setConsumingMethod(addressPort -> {
+            if (results.incrementAndGet() == 100) {
+                stopped.shutdown();
+            }
+        }).executeAndAwait();
+
+        final List<PortChange> changes = diffScan(block, snapshot, new SimulatedNetwork().setOpenDensity(0));
+        assertEquals(countOpen(block, before), changes.size());
+        assertTrue(changes.stream().allMatch(change -> change.getType() == PortChange.Type.CLOSED));
+        assertEquals(0, snapshot.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_diffSnapshot_dropRejected() {
+        new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/24"))
+                .setPorts(Arrays.asList(80, 443))
+                .setDiffSnapshot(new ScanSnapshot())
+                .setChangeMethod(change -> {})
+                .setResultThreadCount(1)
+                .setResultBackpressure(ResultBackpressure.DROP)
+                .execute();
+    }
+
+    private static List<PortChange> diffScan(final IPv4AddressBlock block, final ScanSnapshot snapshot,
+                                             final SimulatedNetwork network) throws InterruptedException {
+        final List<PortChange> changes = Collections.synchronizedList(new ArrayList<>());
+        new IPv4BlockPortScan(block)
+                .setPorts(Arrays.asList(80, 443))
+                .setThreadCount(8)
+                .setLoopDelay(0)
+                .setProber(network)
+                .setDiffSnapshot(snapshot)
+                .setChangeMethod(changes::add)
+                .setConsumingMethod(addressPort -> sleep(1))
+                .setResultThreadCount(2)
+                .executeAndAwait();
+        return changes;
+    }
+
+    private static int countOpen(final IPv4AddressBlock block, final SimulatedNetwork network) {
+        int open = 0;
+        IPv4Address address = block.getFirstAddress();
+        do {
+            for (int port : Arrays.asList(80, 443)) {
+                open += network.isOpen(new IPv4AddressPort(address, port)) ? 1 : 0;
+            }
+            address = address.nextAddress();
+        } while (address.getDecimal() < block.getLastAddress().getDecimal());
+        return open;
+    }
+
+    @Test
+    public void test_reconfigure() throws InterruptedException {
+        final IPv4AddressBlock excluded = new IPv4AddressBlock("10.0.4.0/22");
+        final AtomicInteger phase = new AtomicInteger();
+        final int[][] seen = new int[3][3];
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch held = new CountDownLatch(8);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch afterShrink = new CountDownLatch(50);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/16"))
+                .setPorts(Collections.singletonList(80))
+                .setThreadCount(2)
+                .setLoopDelay(0)
+                .setProber((addressPort, timeout) -> {
+                    final int current = phase.get();
+                    synchronized (seen) {
+                        final int[] counts = seen[current];
+                        counts[0] += addressPort.getPort() == 80 ? 1 : 0;
+                        counts[1] += timeout == 123 ? 1 : 0;
+                        counts[2] += excluded.getFirstAddress().getDecimal() <= addressPort.getiPv4Address().getDecimal()
+                                && addressPort.getiPv4Address().getDecimal() < excluded.getLastAddress().getDecimal() ? 1 : 0;
+                    }
+                    if (current == 1) {
+                        // Every thread the scan runs ends up waiting here at once.
+                        held.countDown();
+                        awaitUninterruptibly(release);
+                    } else if (current == 2) {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        sleep(1);
+                        inFlight.decrementAndGet();
+                        afterShrink.countDown();
+                    }
+                    return PortStatus.CLOSED;
+                })
+                .setConsumingMethod(addressPort -> {})
+                .setProgressListener(progress -> {
+                    if (progress.getCompleted() >= 100) {
+                        started.countDown();
+                    }
+                }, 10)
+                .execute();
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        scan.reconfigure()
+                .setThreadCount(8)
+                .setCheckTimeout(123)
+                .addPorts(Collections.singletonList(443))
+                .removePorts(Collections.singletonList(80))
+                .addExclusion(excluded)
+                .apply();
+        phase.set(1);
+        assertEquals(8, scan.getThreadCount());
+        assertEquals(Collections.singletonList(443), scan.getPorts());
+        assertTrue(held.await(10, TimeUnit.SECONDS));
+
+        // Held threads retire once released, before taking another item, so later probes never overlap.
+        scan.reconfigure().setThreadCount(1).apply();
+        assertEquals(1, scan.getThreadCount());
+        phase.set(2);
+        release.countDown();
+        assertTrue(afterShrink.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxInFlight.get());
+
+        scan.shutdown();
+        scan.await();
+
+        // Probes already past the change when it was applied may still finish as they started.
+        assertTrue(seen[1][0] <= 2);
+        assertTrue(seen[1][1] > 0);
+        assertEquals(0, seen[1][2]);
+        assertEquals(0, seen[2][0]);
+        assertEquals(0, seen[2][2]);
+    }
+
+    @Test
+    public void test_reconfigure_invalid() throws InterruptedException {
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan("10.0.0.0", ScanMethod.ENDLESS_INCREASE)
+                .setPorts(Collections.singletonList(80))
+                .setProber(new SimulatedNetwork())
+                .setConsumingMethod(addressPort -> {});
+
+        try {
+            scan.reconfigure().setCheckTimeout(100).apply();
+            fail("reconfigured before running");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        scan.execute();
+        try {
+            scan.reconfigure().removePorts(Collections.singletonList(80)).apply();
+            fail("removed every port");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            scan.reconfigure().addExclusion(new IPv4AddressBlock("10.0.0.1", "10.0.0.6"));
+            fail("excluded a range that is not a prefix");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(Collections.singletonList(80), new ArrayList<>(scan.getPorts()));
+
+        scan.shutdown();
+        scan.await();
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {}
+    }
+
+}
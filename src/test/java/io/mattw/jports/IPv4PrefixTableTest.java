@@ -0,0 +1,137 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IPv4PrefixTableTest {
+
+    @Test
+    public void test_longestMatch() {
+        final IPv4PrefixTable<String> table = new IPv4PrefixTable<String>()
+                .put("10.1.2.3/32", "host")
+                .put("10.1.2.0/28", "slash28")
+                .put("10.1.0.0/16", "slash16")
+                .put("10.0.0.0/8", "slash8")
+                .put("10.1.2.0/24", "slash24")
+                .put("0.0.0.0/0", "default");
+
+        assertEquals("host", table.lookup(new IPv4Address("10.1.2.3")));
+        assertEquals("slash28", table.lookup(new IPv4Address("10.1.2.15")));
+        assertEquals("slash24", table.lookup(new IPv4Address("10.1.2.16")));
+        assertEquals("slash16", table.lookup(new IPv4Address("10.1.3.1")));
+        assertEquals("slash8", table.lookup(new IPv4Address("10.2.0.0")));
+        assertEquals("default", table.lookup(new IPv4Address("11.0.0.0")));
+        assertEquals(6, table.getValueCount());
+
+        // Replacing a prefix keeps longer ones inside it.
+        table.put("10.1.0.0/16", "replaced");
+        assertEquals("replaced", table.lookup(new IPv4Address("10.1.3.1")));
+        assertEquals("slash24", table.lookup(new IPv4Address("10.1.2.16")));
+    }
+
+    @Test
+    public void test_noMatch() {
+        final IPv4PrefixTable<String> table = new IPv4PrefixTable<String>()
+                .put(new IPv4AddressBlock("192.168.0.0/24"), "lan")
+                .put("192.168.1.7", "single");
+
+        assertEquals("lan", table.lookup(new IPv4Address("192.168.0.255")));
+        assertEquals("single", table.lookup(new IPv4Address("192.168.1.7")));
+        assertNull(table.lookup(new IPv4Address("192.168.1.6")));
+        assertNull(table.lookup(new IPv4Address("255.255.255.255")));
+        assertNull(table.lookup(0));
+    }
+
+    @Test
+    public void test_matchesLinearScan() {
+        final Random random = new Random(45);
+        final IPv4PrefixTable<Integer> table = new IPv4PrefixTable<>();
+        final List<long[]> prefixes = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            // Clustered so prefixes nest at every level.
+            final long network = 0x0A000000L | random.nextInt(1 << 20) << 4;
+            final int length = 8 + random.nextInt(25);
+            final long mask = -1L << (32 - length) & 0xFFFFFFFFL;
+            table.put(network, length, i);
+            prefixes.add(new long[]{network & mask, mask, length, i});
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            final long address = 0x0A000000L | random.nextInt(1 << 24);
+            Integer expected = null;
+            long longest = -1;
+            for (long[] prefix : prefixes) {
+                if ((address & prefix[1]) == prefix[0] && prefix[2] >= longest) {
+                    longest = prefix[2];
+                    expected = (int) prefix[3];
+                }
+            }
+            assertEquals(expected, table.lookup(address));
+        }
+    }
+
+    @Test
+    public void test_load() throws IOException {
+        final Path file = Files.createTempFile("prefixes", ".txt");
+        try {
+            Files.write(file, Arrays.asList(
+                    "# network owners",
+                    "10.0.0.0/8 infrastructure team",
+                    "",
+                    "10.20.0.0/16,web",
+                    "10.20.30.40"), StandardCharsets.UTF_8);
+
+            final IPv4PrefixTable<String> table = IPv4PrefixTable.load(file);
+            assertEquals(3, table.getPrefixCount());
+            assertEquals("infrastructure team", table.lookup(new IPv4Address("10.1.1.1")));
+            assertEquals("web", table.lookup(new IPv4Address("10.20.1.1")));
+            assertEquals("", table.lookup(new IPv4Address("10.20.30.40")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_loadInvalid() throws IOException {
+        final Path file = Files.createTempFile("prefixes", ".txt");
+        try {
+            Files.write(file, Collections.singletonList("10.0.0.0/40 bad"), StandardCharsets.UTF_8);
+            IPv4PrefixTable.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test_scanTags() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        final IPv4PrefixTable<String> table = new IPv4PrefixTable<String>().put("127.0.0.0/8", "loopback");
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Collections.singletonList(server.getLocalPort()))
+                    .setTagTable(table)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(1, results.size());
+        assertEquals("loopback", results.get(0).getTag());
+    }
+
+}
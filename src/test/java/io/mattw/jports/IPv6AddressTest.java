@@ -0,0 +1,72 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IPv6AddressTest {
+
+    @Test
+    public void test_parseAndFormat() {
+        assertEquals("::", new IPv6Address("::").getAddress());
+        assertEquals("::1", new IPv6Address("0:0:0:0:0:0:0:1").getAddress());
+        assertEquals("2001:db8::1", new IPv6Address("2001:0DB8:0000:0000:0000:0000:0000:0001").getAddress());
+        assertEquals("fe80::", new IPv6Address("fe80::").getAddress());
+        assertEquals("::ffff:102:304", new IPv6Address("::ffff:1.2.3.4").getAddress());
+
+        // Longest run of zeros is compressed, the first when tied, and never a single group
+        assertEquals("2001:0:0:1::1", new IPv6Address("2001:0:0:1:0:0:0:1").getAddress());
+        assertEquals("2001:db8::1:0:0:1", new IPv6Address("2001:db8:0:0:1:0:0:1").getAddress());
+        assertEquals("2001:db8:0:1:1:1:1:1", new IPv6Address("2001:db8:0:1:1:1:1:1").getAddress());
+
+        final IPv6Address address = new IPv6Address("2001:db8::ff00:42:8329");
+        assertEquals(0x20010db800000000L, address.getHigh());
+        assertEquals(0x0000ff0000428329L, address.getLow());
+        assertEquals(address, new IPv6Address(address.getHigh(), address.getLow()));
+        assertEquals(address, new IPv6Address(address.toInetAddress().getHostAddress()));
+    }
+
+    @Test
+    public void test_invalid() {
+        for (String invalid : new String[]{"", ":", "1::2::3", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9",
+                "1:2:3:4:5:6:7::8", "12345::", "g::", "::1.2.3", "1.2.3.4::"}) {
+            assertFalse(invalid, IPv6Address.matchesIPv6Pattern(invalid));
+        }
+        assertTrue(IPv6Address.matchesIPv6Pattern("1:2:3:4:5:6:7:8"));
+        assertTrue(IPv6Address.matchesIPv6Pattern("1::"));
+    }
+
+    @Test
+    public void test_traverse() {
+        final IPv6Address address = new IPv6Address("2001:db8::ffff:ffff:ffff:ffff");
+        assertEquals("2001:db8:0:1::", address.nextAddress().getAddress());
+        assertEquals(address, address.nextAddress().prevAddress());
+        assertEquals("2001:db8::ffff:ffff:ffff:fffe", address.traverse(-1).getAddress());
+        assertEquals("::", new IPv6Address("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").nextAddress().getAddress());
+
+        assertTrue(address.compareTo(address.nextAddress()) < 0);
+        assertTrue(new IPv6Address("ff00::").compareTo(new IPv6Address("::1")) > 0);
+        assertTrue(new IPv6Address("::ffff:ffff:ffff:ffff").compareTo(new IPv6Address("::8000:0:0:0")) > 0);
+    }
+
+    @Test
+    public void test_block() {
+        final IPv6AddressBlock block = new IPv6AddressBlock("2001:db8::1234/120");
+        assertEquals("2001:db8::1200", block.getFirstAddress().getAddress());
+        assertEquals("2001:db8::12ff", block.getLastAddress().getAddress());
+        assertEquals("2001:db8::1200/120", block.getCidrNotation());
+        assertEquals(256, block.getSize());
+        assertTrue(block.contains(new IPv6Address("2001:db8::12ab")));
+        assertFalse(block.contains(new IPv6Address("2001:db8::1300")));
+
+        final IPv6AddressBlock wide = new IPv6AddressBlock("2001:db8::/32");
+        assertEquals("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff", wide.getLastAddress().getAddress());
+        assertEquals(-1, wide.getSize());
+        assertEquals(-1, new IPv6AddressBlock("2001:db8::/65").getSize());
+        assertEquals(1L << 62, new IPv6AddressBlock("2001:db8::/66").getSize());
+        assertEquals(1, new IPv6AddressBlock("::1/128").getSize());
+    }
+
+}
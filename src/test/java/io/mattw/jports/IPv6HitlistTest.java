@@ -0,0 +1,109 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IPv6HitlistTest {
+
+    private static List<String> expand(final IPv6Hitlist hitlist) {
+        final List<String> addresses = new ArrayList<>();
+        final IPv6Hitlist.Cursor cursor = hitlist.cursor();
+        while (cursor.next()) {
+            addresses.add(IPv6Address.format(cursor.getHigh(), cursor.getLow()));
+        }
+        return addresses;
+    }
+
+    @Test
+    public void test_patterns() {
+        assertEquals(Arrays.asList("2001:db8::1"), expand(new IPv6Hitlist().add("2001:db8::1")));
+        assertEquals(Arrays.asList("2001:db8::", "2001:db8::1", "2001:db8::2", "2001:db8::3"),
+                expand(new IPv6Hitlist().add("2001:db8::/126")));
+        assertEquals(Arrays.asList("2001:db8::1", "2001:db8::2", "2001:db8::3"),
+                expand(new IPv6Hitlist().add("2001:db8::[1-3]")));
+
+        final IPv6Hitlist groups = new IPv6Hitlist().add("2001:db8:[0-1]::[a-b]");
+        assertEquals(Arrays.asList("2001:db8::a", "2001:db8::b", "2001:db8:1::a", "2001:db8:1::b"), expand(groups));
+        assertEquals(4, groups.getSize());
+
+        final IPv6Hitlist combined = new IPv6Hitlist()
+                .add("# routers")
+                .add("")
+                .add("2001:db8::1")
+                .add(new IPv6AddressBlock("2001:db8:1::/127"));
+        assertEquals(2, combined.getPatternCount());
+        assertEquals(3, combined.getSize());
+        assertEquals(Arrays.asList("2001:db8::1", "2001:db8:1::", "2001:db8:1::1"), expand(combined));
+    }
+
+    @Test
+    public void test_eui64() {
+        final IPv6Hitlist hitlist = new IPv6Hitlist().add("2001:db8::/64 eui64 00:1b:21:aa:bb:[01-02]");
+        assertEquals(Arrays.asList("2001:db8::21b:21ff:feaa:bb01", "2001:db8::21b:21ff:feaa:bb02"), expand(hitlist));
+
+        final IPv6Hitlist vendor = new IPv6Hitlist().add("2001:db8::/64 eui64 00-1b-21-*-*-*");
+        assertEquals(1 << 24, vendor.getSize());
+    }
+
+    @Test
+    public void test_invalid() {
+        for (String invalid : new String[]{"2001:db8::[3-1]", "2001:db8::[ff-100]", "2001:db8::/48 eui64 00:1b:21:aa:bb:cc",
+                "2001:db8::/64 eui64 00:1b:21", "2001:db8::1 2001:db8::2", "2001:db8::/129"}) {
+            try {
+                new IPv6Hitlist().add(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void test_load() throws Exception {
+        final Path file = Files.createTempFile("hitlist", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# hitlist", "::1", "2001:db8::[1-2]"), StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("::1", "2001:db8::1", "2001:db8::2"), expand(IPv6Hitlist.load(file)));
+
+            Files.write(file, Arrays.asList("::1", "not an address"), StandardCharsets.UTF_8);
+            try {
+                IPv6Hitlist.load(file);
+                fail("invalid line loaded");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("line 2"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test_targetRing() {
+        final TargetRing ring = new TargetRing(2);
+        final long[] target = new long[3];
+        assertFalse(ring.poll(target));
+        assertTrue(ring.offer(1, 2, 80));
+        assertTrue(ring.offer(3, 4, 443));
+        assertFalse(ring.offer(5, 6, 22));
+        assertTrue(ring.poll(target));
+        assertEquals(Arrays.asList(1L, 2L, 80L), Arrays.asList(target[0], target[1], target[2]));
+        assertTrue(ring.offer(5, 6, 22));
+        assertTrue(ring.poll(target));
+        assertEquals(443, target[2]);
+        assertTrue(ring.poll(target));
+        assertEquals(22, target[2]);
+        assertEquals(0, ring.size());
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class IPv6PortScanTest {
+
+    @Test
+    public void test_loopback() throws Exception {
+        final List<IPv6AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        final int closedPort;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getByName("::1"))) {
+            closedPort = closed.getLocalPort();
+        }
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("::1"))) {
+            final IPv6PortScan scan = new IPv6PortScan(new IPv6AddressBlock("::1/128"))
+                    .setPorts(Arrays.asList(server.getLocalPort(), closedPort))
+                    .setThreadCount(2)
+                    .setConsumeAllStatuses(true)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+            assertEquals(2, scan.completedItems.sum());
+        }
+
+        assertEquals(2, results.size());
+        for (IPv6AddressPort result : results) {
+            assertEquals("::1", result.getiPv6Address().getAddress());
+            assertEquals(result.getPort() == closedPort ? PortStatus.CLOSED : PortStatus.OPEN, result.getStatus());
+        }
+    }
+
+    @Test
+    public void test_openOnly() throws Exception {
+        final List<IPv6AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("::1"))) {
+            final IPv6PortScan scan = new IPv6PortScan(Arrays.asList("::[1-4]"))
+                    .setPorts(Collections.singletonList(server.getLocalPort()))
+                    .setThreadCount(4)
+                    .setCheckTimeout(100)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+            assertEquals(4, scan.completedItems.sum());
+        }
+
+        assertEquals(1, results.size());
+        assertEquals("[::1]:" + results.get(0).getPort(), results.get(0).getFullAddress());
+    }
+
+}
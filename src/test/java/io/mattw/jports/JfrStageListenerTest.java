@@ -0,0 +1,85 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class JfrStageListenerTest {
+
+    /**
+     * Records a scan of one open port and reads the events back. The {@code jdk.jfr} API is used through
+     * reflection, as the tests compile against Java 8 like the library.
+     */
+    @Test
+    public void test_recordsStages() throws Exception {
+        assumeTrue(JfrStageListener.isSupported());
+
+        final Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingClass.getConstructor().newInstance();
+        final Path file = Files.createTempFile("jports", ".jfr");
+        final int port;
+        try {
+            recordingClass.getMethod("enable", String.class).invoke(recording, "io.mattw.jports.ScanStage");
+            recordingClass.getMethod("start").invoke(recording);
+
+            try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+                port = server.getLocalPort();
+                new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                        .setPorts(Collections.singletonList(port))
+                        .setStageListener(new JfrStageListener())
+                        .setConsumingMethod(addressPort -> {})
+                        .executeAndAwait();
+            }
+
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        final Class<?> eventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        final Map<ScanStage, Object> events = new EnumMap<>(ScanStage.class);
+        try {
+            final List<?> recorded = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                    .getMethod("readAllEvents", Path.class).invoke(null, file);
+            for (Object event : recorded) {
+                final Object type = eventClass.getMethod("getEventType").invoke(event);
+                if ("io.mattw.jports.ScanStage".equals(type.getClass().getMethod("getName").invoke(type))) {
+                    assertNull(events.put(ScanStage.valueOf(field(eventClass, event, "getString", "stage")), event));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        assertEquals(ScanStage.values().length, events.size());
+        for (Map.Entry<ScanStage, Object> entry : events.entrySet()) {
+            final Object event = entry.getValue();
+            assertEquals("127.0.0.1", field(eventClass, event, "getString", "address"));
+            assertEquals(port, (int) field(eventClass, event, "getInt", "port"));
+            assertTrue((long) field(eventClass, event, "getLong", "elapsed") >= 0);
+
+            // Only stages after the check know its outcome.
+            final boolean checked = entry.getKey() == ScanStage.PROBE || entry.getKey() == ScanStage.CONSUME;
+            assertEquals(checked ? "OPEN" : null, field(eventClass, event, "getString", "outcome"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V field(final Class<?> eventClass, final Object event, final String getter, final String name) throws Exception {
+        return (V) eventClass.getMethod(getter, String.class).invoke(event, name);
+    }
+
+}
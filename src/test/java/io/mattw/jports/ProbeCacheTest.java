@@ -0,0 +1,72 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProbeCacheTest {
+
+    private IPv4AddressPort addressPort = new IPv4AddressPort("127.0.0.1", 1);
+
+    private ProbeCache cache;
+
+    @Test
+    public void testCache_miss() {
+        cache = new ProbeCache(1024, 60000);
+
+        assertNull(cache.get(addressPort));
+    }
+
+    @Test
+    public void testCache_hit() {
+        cache = new ProbeCache(1024, 60000);
+        cache.put(addressPort, PortStatus.OPEN);
+        cache.put(new IPv4AddressPort("127.0.0.1", 2), PortStatus.CLOSED);
+
+        assertEquals(PortStatus.OPEN, cache.get(addressPort));
+        assertEquals(PortStatus.CLOSED, cache.get(new IPv4AddressPort("127.0.0.1", 2)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testCache_expired() throws InterruptedException {
+        cache = new ProbeCache(1024, 20);
+        cache.put(addressPort, PortStatus.OPEN);
+
+        Thread.sleep(50);
+
+        assertNull(cache.get(addressPort));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCache_sizeBounded() {
+        cache = new ProbeCache(1024, 60000);
+        for (long decimal = 0; decimal < 100000; decimal++) {
+            cache.put(IPv4AddressPort.pack(decimal, 80), PortStatus.OPEN);
+        }
+
+        assertTrue(cache.size() <= 2048);
+        assertEquals(PortStatus.OPEN, cache.get(IPv4AddressPort.pack(99999, 80)));
+    }
+
+    @Test
+    public void testCache_scanHit() throws InterruptedException {
+        cache = new ProbeCache(1024, 60000);
+        cache.put(addressPort, PortStatus.OPEN);
+
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        new IPv4BlockPortScan(addressPort.getiPv4Address(), ScanMethod.SINGLE_ADDRESS)
+                .setPorts(Collections.singletonList(addressPort.getPort()))
+                .setResultCache(cache)
+                .setConsumingMethod(results::add)
+                .executeAndAwait();
+
+        assertEquals(1, results.size());
+    }
+
+}
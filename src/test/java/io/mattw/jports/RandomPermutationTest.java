@@ -0,0 +1,57 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RandomPermutationTest {
+
+    @Test
+    public void test_everyValueOnce() {
+        for (long size : new long[]{1, 2, 3, 17, 1000, 65536, 100003}) {
+            final RandomPermutation permutation = new RandomPermutation(size, size);
+            final boolean[] seen = new boolean[(int) size];
+            long value;
+            int count = 0;
+            while ((value = permutation.next()) >= 0) {
+                assertFalse(seen[(int) value]);
+                seen[(int) value] = true;
+                count++;
+            }
+            assertEquals(size, count);
+            assertEquals(-1, permutation.next());
+        }
+    }
+
+    @Test
+    public void test_shuffled() {
+        final RandomPermutation first = new RandomPermutation(10000, 1);
+        final RandomPermutation same = new RandomPermutation(10000, 1);
+        final RandomPermutation other = new RandomPermutation(10000, 2);
+
+        int inPlace = 0;
+        int differs = 0;
+        long low = 0;
+        for (int i = 0; i < 1000; i++) {
+            final long value = first.next();
+            assertEquals(value, same.next());
+            if (value == i) {
+                inPlace++;
+            }
+            if (value != other.next()) {
+                differs++;
+            }
+            if (value < 5000) {
+                low++;
+            }
+        }
+
+        assertTrue(inPlace < 10);
+        assertTrue(differs > 990);
+        // The first tenth is spread over the whole range.
+        assertTrue(low > 400 && low < 600);
+    }
+
+}
@@ -0,0 +1,84 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReorderBufferTest {
+
+    @Test
+    public void test_emitsInOrder() {
+        final List<String> emitted = new ArrayList<>();
+        final ReorderBuffer<String> buffer = new ReorderBuffer<>(4, emitted::add);
+
+        buffer.complete(2, "c");
+        buffer.complete(1, null);
+        assertTrue(emitted.isEmpty());
+        assertEquals(2, buffer.getWaiting());
+
+        buffer.complete(0, "a");
+        assertEquals(Arrays.asList("a", "c"), emitted);
+        assertEquals(3, buffer.getLowWaterMark());
+
+        buffer.complete(4, "e");
+        buffer.complete(3, "d");
+        assertEquals(Arrays.asList("a", "c", "d", "e"), emitted);
+        assertEquals(0, buffer.getWaiting());
+    }
+
+    @Test
+    public void test_producerWaitsForRoom() throws InterruptedException {
+        final List<Integer> emitted = Collections.synchronizedList(new ArrayList<>());
+        final ReorderBuffer<Integer> buffer = new ReorderBuffer<>(2, emitted::add);
+        final AtomicBoolean produced = new AtomicBoolean();
+
+        final Thread producer = new Thread(() -> {
+            buffer.awaitRoom(2, () -> false);
+            produced.set(true);
+        });
+        producer.start();
+
+        buffer.complete(1, 1);
+        Thread.sleep(50);
+        assertFalse(produced.get());
+
+        buffer.complete(0, 0);
+        producer.join(2000);
+        assertTrue(produced.get());
+        assertEquals(Arrays.asList(0, 1), emitted);
+    }
+
+    @Test
+    public void test_concurrentCompletion() throws InterruptedException {
+        final List<Integer> emitted = Collections.synchronizedList(new ArrayList<>());
+        final ReorderBuffer<Integer> buffer = new ReorderBuffer<>(10000, emitted::add);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < 10000; i += 4) {
+                    buffer.complete(i, i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(10000, emitted.size());
+        for (int i = 0; i < emitted.size(); i++) {
+            assertEquals(i, (int) emitted.get(i));
+        }
+    }
+
+}
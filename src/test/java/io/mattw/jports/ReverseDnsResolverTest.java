@@ -0,0 +1,179 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReverseDnsResolverTest {
+
+    private DatagramSocket stub;
+    private Thread stubThread;
+    private final AtomicInteger stubQueries = new AtomicInteger();
+
+    /**
+     * Answers PTR queries for 127.0.0.1 with stub.example and everything else with NXDOMAIN.
+     */
+    @Before
+    public void startStub() throws IOException {
+        stub = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        stubThread = new Thread(() -> {
+            final byte[] buffer = new byte[512];
+            while (!stub.isClosed()) {
+                try {
+                    final DatagramPacket query = new DatagramPacket(buffer, buffer.length);
+                    stub.receive(query);
+                    stubQueries.incrementAndGet();
+
+                    final byte[] response = answer(Arrays.copyOf(buffer, query.getLength()));
+                    stub.send(new DatagramPacket(response, response.length, query.getSocketAddress()));
+                } catch (IOException ignored) {}
+            }
+        });
+        stubThread.setDaemon(true);
+        stubThread.start();
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+    }
+
+    private static byte[] answer(final byte[] query) {
+        int end = 12;
+        final StringBuilder name = new StringBuilder();
+        while (query[end] != 0) {
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            name.append(new String(query, end + 1, query[end]));
+            end += query[end] + 1;
+        }
+        end += 5;
+
+        final boolean found = name.toString().equals("1.0.0.127.in-addr.arpa");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(query[0]);
+        out.write(query[1]);
+        out.write(0x81);
+        out.write(found ? 0x80 : 0x83);
+        out.write(new byte[]{0, 1, 0, found ? (byte) 1 : 0, 0, 0, 0, 0}, 0, 8);
+        out.write(query, 12, end - 12);
+        if (found) {
+            final byte[] rdata = {4, 's', 't', 'u', 'b', 7, 'e', 'x', 'a', 'm', 'p', 'l', 'e', 0};
+            out.write(new byte[]{(byte) 0xC0, 12, 0, 12, 0, 1, 0, 0, 0, 60, 0, (byte) rdata.length}, 0, 12);
+            out.write(rdata, 0, rdata.length);
+        }
+        return out.toByteArray();
+    }
+
+    private ReverseDnsResolver resolver() {
+        return new ReverseDnsResolver(new InetSocketAddress(InetAddress.getLoopbackAddress(), stub.getLocalPort()))
+                .setTimeout(1000);
+    }
+
+    @Test
+    public void test_resolve() {
+        try (ReverseDnsResolver resolver = resolver()) {
+            assertEquals("stub.example", resolver.resolve(new IPv4Address("127.0.0.1")).join());
+            assertNull(resolver.resolve(new IPv4Address("127.0.0.2")).join());
+
+            // Both found and missing hostnames are answered from the cache.
+            assertEquals("stub.example", resolver.resolve(new IPv4Address("127.0.0.1")).join());
+            assertNull(resolver.resolve(new IPv4Address("127.0.0.2")).join());
+            assertEquals(2, resolver.getQueryCount());
+            assertEquals(2, stubQueries.get());
+            assertEquals(2, resolver.getCacheSize());
+        }
+    }
+
+    @Test
+    public void test_cacheBounds() throws InterruptedException {
+        try (ReverseDnsResolver resolver = resolver().setCache(2, 50)) {
+            for (int i = 1; i <= 4; i++) {
+                resolver.resolve(new IPv4Address("127.0.0." + i)).join();
+            }
+            assertEquals(2, resolver.getCacheSize());
+
+            Thread.sleep(60);
+            resolver.resolve(new IPv4Address("127.0.0.4")).join();
+            assertEquals(5, resolver.getQueryCount());
+        }
+    }
+
+    @Test
+    public void test_concurrentLookupsShared() {
+        try (ReverseDnsResolver resolver = resolver().setMaxConcurrent(2)) {
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(resolver.resolve(new IPv4Address("127.0.0." + (1 + i % 4))));
+            }
+            futures.forEach(CompletableFuture::join);
+
+            assertEquals("stub.example", futures.get(0).join());
+            assertEquals(resolver.getQueryCount(), stubQueries.get());
+            assertEquals(4, resolver.getCacheSize());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void test_resolveAfterClose() {
+        final ReverseDnsResolver resolver = resolver();
+        assertEquals("stub.example", resolver.resolve(new IPv4Address("127.0.0.1")).join());
+        resolver.close();
+
+        assertNull(resolver.resolve(new IPv4Address("127.0.0.2")).join());
+        // Not left waiting on the lookup that was never submitted.
+        assertNull(resolver.resolve(new IPv4Address("127.0.0.2")).join());
+        assertEquals("stub.example", resolver.resolve(new IPv4Address("127.0.0.1")).join());
+        assertEquals(1, resolver.getQueryCount());
+    }
+
+    @Test
+    public void test_noServer() throws IOException {
+        final int port;
+        try (DatagramSocket unused = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            port = unused.getLocalPort();
+        }
+
+        try (ReverseDnsResolver resolver = new ReverseDnsResolver(new InetSocketAddress(InetAddress.getLoopbackAddress(), port)).setTimeout(100)) {
+            assertNull(resolver.resolve(new IPv4Address("127.0.0.1")).join());
+            // Failures are not cached.
+            assertEquals(0, resolver.getCacheSize());
+        }
+    }
+
+    @Test
+    public void test_scanHostnames() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (ReverseDnsResolver resolver = resolver();
+             ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Collections.singletonList(server.getLocalPort()))
+                    .setReverseDns(resolver)
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(1, results.size());
+        assertEquals("stub.example", results.get(0).getHostname());
+    }
+
+}
@@ -0,0 +1,88 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SampleEstimateTest {
+
+    @Test
+    public void test_wilsonInterval() {
+        final SampleEstimate half = new SampleEstimate(1000, 10, 5);
+        assertEquals(0.5, half.getProportion(), 0);
+        assertEquals(0.2366, half.getLower(), 0.0001);
+        assertEquals(0.7634, half.getUpper(), 0.0001);
+        assertEquals(500, half.getEstimatedOpen());
+
+        // Stays inside 0-1 and is not empty when nothing was found.
+        final SampleEstimate none = new SampleEstimate(1000, 10, 0);
+        assertEquals(0, none.getLower(), 0);
+        assertEquals(0.2775, none.getUpper(), 0.0001);
+
+        final SampleEstimate empty = new SampleEstimate(1000, 0, 0);
+        assertEquals(0.5, empty.getHalfWidth(), 0);
+    }
+
+    @Test
+    public void test_stopsAtPrecision() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/16");
+        final List<Integer> ports = Arrays.asList(80, 443);
+        final SimulatedNetwork network = new SimulatedNetwork().setSeed(46).setOpenDensity(0.1);
+        final Set<Long> checked = new HashSet<>();
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(block)
+                .setPorts(ports)
+                .setThreadCount(4)
+                .setLoopDelay(0)
+                .setProber(network)
+                .setConsumeAllStatuses(true)
+                .setSampling(0.01, 0)
+                .setConsumingMethod(addressPort -> {
+                    synchronized (checked) {
+                        assertTrue(checked.add(addressPort.getPacked()));
+                    }
+                })
+                .executeAndAwait();
+
+        final SampleEstimate estimate = scan.getSampleEstimate();
+        assertEquals(checked.size(), estimate.getSampled());
+        assertTrue(estimate.getHalfWidth() <= 0.01);
+        assertTrue(estimate.getSampled() < block.getSize() * ports.size() / 10);
+        assertTrue(estimate.getLower() < 0.1 + 0.01 && estimate.getUpper() > 0.1 - 0.01);
+    }
+
+    @Test
+    public void test_stopsAtBudget() throws InterruptedException {
+        final SimulatedNetwork network = new SimulatedNetwork().setSeed(46).setOpenDensity(0.5);
+
+        final IPv4BlockPortScan scan = new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/8"))
+                .setPorts(Arrays.asList(22, 80, 443))
+                .setThreadCount(8)
+                .setLoopDelay(0)
+                .setProber(network)
+                .setSampling(0, 500)
+                .setConsumingMethod(addressPort -> {})
+                .executeAndAwait();
+
+        assertEquals(500, scan.getSampleEstimate().getSampled());
+        assertEquals(500, scan.completedItems.sum());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_diffSnapshotRejected() {
+        new IPv4BlockPortScan(new IPv4AddressBlock("10.0.0.0/24"))
+                .setPorts(Arrays.asList(80, 443))
+                .setProber(new SimulatedNetwork())
+                .setSampling(0, 20)
+                .setDiffSnapshot(new ScanSnapshot())
+                .setChangeMethod(change -> {})
+                .execute();
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScanRuntimeTest {
+
+    private ScanRuntime runtime = new ScanRuntime(4);
+
+    @After
+    public void teardown() {
+        runtime.close();
+    }
+
+    @Test
+    public void testRuntime_multipleJobs() throws InterruptedException {
+        final AtomicInteger first = new AtomicInteger();
+        final List<IPv4AddressPort> second = Collections.synchronizedList(new ArrayList<>());
+
+        final IPv4BlockScan scan1 = runtime.submit(new IPv4BlockScan(new IPv4AddressBlock("10.0.0.0/24"))
+                .setConsumingMethod(address -> first.incrementAndGet()));
+        final IPv4BlockPortScan scan2 = runtime.submit(new IPv4BlockPortScan(new IPv4AddressBlock("10.0.1.0/28"))
+                .setPorts(Collections.singletonList(80))
+                .setCheckPortOpen(false)
+                .setConsumingMethod(second::add));
+
+        scan1.await();
+        scan2.await();
+
+        assertEquals(256, first.get());
+        assertEquals(16, second.size());
+        assertEquals(0, runtime.getActiveJobs());
+    }
+
+    @Test
+    public void testRuntime_priority() throws InterruptedException {
+        final IPv4BlockScan background = runtime.submit(new IPv4BlockScan(new IPv4AddressBlock("10.0.0.0/20"))
+                .setConsumingMethod(address -> sleep(1)));
+        final IPv4BlockScan interactive = runtime.submit(new IPv4BlockScan(new IPv4AddressBlock("10.1.0.0/28"))
+                .setConsumingMethod(address -> sleep(1)), 1, 1);
+
+        interactive.await();
+
+        assertFalse(background.isConsumingFinished());
+        background.shutdown();
+        background.await();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRuntime_udpRejected() {
+        runtime.submit(new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                .setPorts(Collections.singletonList(53))
+                .setProtocol(Protocol.UDP)
+                .setConsumingMethod(addressPort -> {}));
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ignored) {}
+    }
+
+}
@@ -0,0 +1,101 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanSnapshotTest {
+
+    private ServerSocket server;
+    private int openPort;
+    private int closedPort;
+
+    private List<PortChange> changes = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setup() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        openPort = server.getLocalPort();
+
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = closed.getLocalPort();
+        }
+    }
+
+    @After
+    public void teardown() throws IOException {
+        server.close();
+    }
+
+    private void scan(final ScanSnapshot snapshot) throws InterruptedException {
+        new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                .setPorts(Arrays.asList(openPort, closedPort))
+                .setDiffSnapshot(snapshot)
+                .setChangeMethod(changes::add)
+                .executeAndAwait();
+    }
+
+    @Test
+    public void testDiff_opened() throws InterruptedException {
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        scan(snapshot);
+
+        assertEquals(1, changes.size());
+        assertEquals(PortChange.Type.OPENED, changes.get(0).getType());
+        assertEquals(openPort, changes.get(0).getAddressPort().getPort());
+        assertTrue(snapshot.isOpen(new IPv4AddressPort("127.0.0.1", openPort)));
+    }
+
+    @Test
+    public void testDiff_unchanged() throws InterruptedException {
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        scan(snapshot);
+        changes.clear();
+
+        scan(snapshot);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testDiff_closed() throws Exception {
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        snapshot.markOpen(new IPv4AddressPort("127.0.0.1", closedPort), false);
+        snapshot.markOpen(new IPv4AddressPort("127.0.0.2", closedPort), false);
+
+        scan(snapshot);
+
+        assertEquals(2, changes.size());
+        assertEquals(1, changes.stream().filter(change -> change.getType() == PortChange.Type.CLOSED).count());
+        assertFalse(snapshot.isOpen(new IPv4AddressPort("127.0.0.1", closedPort)));
+        assertTrue(snapshot.isOpen(new IPv4AddressPort("127.0.0.2", closedPort)));
+    }
+
+    @Test
+    public void testSnapshot_saveLoad() throws Exception {
+        final Path path = File.createTempFile("jports", ".snapshot").toPath();
+        final ScanSnapshot snapshot = new ScanSnapshot();
+        snapshot.markOpen(new IPv4AddressPort("10.0.0.1", 80), false);
+        snapshot.markOpen(new IPv4AddressPort("10.0.0.2", 443), false);
+        snapshot.save(path);
+
+        final ScanSnapshot loaded = ScanSnapshot.load(path);
+
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.isOpen(new IPv4AddressPort("10.0.0.2", 443)));
+        path.toFile().delete();
+    }
+
+}
@@ -0,0 +1,92 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedNetworkTest {
+
+    private final List<Integer> ports = Arrays.asList(22, 80, 443, 8080);
+
+    private long expectedOpen(final SimulatedNetwork network, final IPv4AddressBlock block) {
+        long open = 0;
+        for (long decimal = block.getFirstAddress().getDecimal(); decimal < block.getLastAddress().getDecimal(); decimal++) {
+            for (int port : ports) {
+                if (network.isOpen(new IPv4AddressPort(decimal, port))) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    @Test
+    public void test_repeatable() {
+        final IPv4AddressPort addressPort = new IPv4AddressPort("10.0.0.1", 80);
+        final SimulatedNetwork network = new SimulatedNetwork().setSeed(7).setOpenDensity(0.5);
+
+        assertEquals(network.isOpen(addressPort), new SimulatedNetwork().setSeed(7).setOpenDensity(0.5).isOpen(addressPort));
+        assertEquals(network.isOpen(addressPort) ? PortStatus.OPEN : PortStatus.CLOSED, network.probe(addressPort, 100));
+        assertEquals(PortStatus.FILTERED, new SimulatedNetwork().setLossRate(1).probe(addressPort, 1));
+        assertEquals(PortStatus.OPEN, new SimulatedNetwork().setOpenDensity(1).probeAsync(addressPort, 100).join());
+    }
+
+    @Test
+    public void test_fullSpeed() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.0.0.0/16");
+        final SimulatedNetwork network = new SimulatedNetwork().setSeed(1).setOpenDensity(0.05);
+        final LongAdder open = new LongAdder();
+
+        final long start = System.nanoTime();
+        new IPv4BlockPortScan(block)
+                .setPorts(ports)
+                .setThreadCount(4)
+                .setLoopDelay(0)
+                .setProber(network)
+                .setConsumingMethod(addressPort -> open.increment())
+                .executeAndAwait();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d simulated probes in %.2fs, %.0f per second%n", network.getProbeCount(), seconds, network.getProbeCount() / seconds);
+
+        assertEquals(block.getSize() * ports.size(), network.getProbeCount());
+        assertEquals(expectedOpen(network, block), open.sum());
+    }
+
+    @Test
+    public void test_asyncLatencyAndLoss() throws InterruptedException {
+        final IPv4AddressBlock block = new IPv4AddressBlock("10.1.0.0/24");
+        final SimulatedNetwork network = new SimulatedNetwork()
+                .setSeed(2)
+                .setOpenDensity(0.2)
+                .setLatency(200, 2000)
+                .setLossRate(0.1);
+        final LongAdder open = new LongAdder();
+        final LongAdder retried = new LongAdder();
+
+        new IPv4BlockPortScan(block)
+                .setPorts(ports)
+                .setThreadCount(256)
+                .setLoopDelay(0)
+                .setCheckTimeout(5)
+                .setRetryPolicy(5, 1)
+                .setProber(network)
+                .setConsumingMethod(addressPort -> {
+                    open.increment();
+                    if (addressPort.getRetries() > 0) {
+                        retried.increment();
+                    }
+                })
+                .executeAndAwait();
+
+        // Losing a probe six times in a row is unlikely enough that every open port is found.
+        assertEquals(expectedOpen(network, block), open.sum());
+        assertTrue(retried.sum() > 0);
+        assertTrue(network.getProbeCount() > block.getSize() * ports.size());
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.mattw.jports;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TargetReaderTest {
+
+    private List<String> read(final TargetReader reader) {
+        final List<String> addresses = new ArrayList<>();
+        reader.forEachRemaining(address -> addresses.add(address.getAddress()));
+        return addresses;
+    }
+
+    @Test
+    public void testReader_single() {
+        assertEquals(Collections.singletonList("10.0.0.1"), read(new TargetReader(Collections.singletonList("10.0.0.1"))));
+    }
+
+    @Test
+    public void testReader_cidrAligned() {
+        final List<String> addresses = read(new TargetReader(Collections.singletonList("10.0.0.5/30")));
+
+        assertEquals(Arrays.asList("10.0.0.4", "10.0.0.5", "10.0.0.6", "10.0.0.7"), addresses);
+    }
+
+    @Test
+    public void testReader_rangeInclusive() {
+        final List<String> addresses = read(new TargetReader(Collections.singletonList("10.0.0.3-10.0.0.1")));
+
+        assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3"), addresses);
+    }
+
+    @Test
+    public void testReader_linesAndComments() {
+        final BufferedReader input = new BufferedReader(new StringReader("# targets\n10.0.0.1, 10.0.0.2\n\n10.0.1.0/31 # lab\n"));
+
+        assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.1.0", "10.0.1.1"), read(new TargetReader(input)));
+    }
+
+    @Test
+    public void testReader_wholeSpace() {
+        final TargetReader reader = new TargetReader(Collections.singletonList("255.255.255.254/31"));
+
+        assertEquals(Arrays.asList("255.255.255.254", "255.255.255.255"), read(reader));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testReader_invalidSkipped() {
+        final List<String> invalid = new ArrayList<>();
+        final TargetReader reader = new TargetReader(Arrays.asList("bogus", "10.0.0.1")).setInvalidMethod(invalid::add);
+
+        assertEquals(Collections.singletonList("10.0.0.1"), read(reader));
+        assertEquals(Collections.singletonList("bogus"), invalid);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReader_invalidThrows() {
+        read(new TargetReader(Collections.singletonList("bogus")));
+    }
+
+}
@@ -0,0 +1,154 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TlsInspectorTest {
+
+    private SSLServerSocket server;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Serves the self-signed certificate in selfsigned.p12, CN=jports.test valid for 100 years.
+     */
+    @Before
+    public void startServer() throws Exception {
+        final char[] password = "changeit".toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream("/selfsigned.p12")) {
+            keyStore.load(in, password);
+        }
+        final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+
+        server = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    final SSLSocket socket = (SSLSocket) server.accept();
+                    connections.incrementAndGet();
+                    new Thread(() -> {
+                        try (SSLSocket connection = socket) {
+                            connection.startHandshake();
+                            connection.getInputStream().read();
+                        } catch (IOException ignored) {}
+                    }).start();
+                } catch (IOException ignored) {}
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    private IPv4AddressPort target(final int port) {
+        return new IPv4AddressPort(new IPv4Address("127.0.0.1"), port);
+    }
+
+    @Test
+    public void test_inspect() {
+        try (TlsInspector inspector = new TlsInspector().setTimeout(2000)) {
+            final TlsInfo info = inspector.inspect(target(server.getLocalPort())).join();
+
+            assertNotNull(info);
+            assertEquals("CN=jports.test,O=jports", info.getSubject());
+            assertEquals(info.getSubject(), info.getIssuer());
+            assertEquals(Arrays.asList("jports.test", "localhost", "127.0.0.1"), info.getSubjectAlternativeNames());
+            assertTrue(info.getNotAfter().isAfter(Instant.now().plusSeconds(365L * 24 * 3600 * 50)));
+            assertTrue(info.getProtocol().startsWith("TLSv1"));
+            assertNotNull(info.getCipherSuite());
+
+            // Answered from the cache.
+            assertEquals(info, inspector.inspect(target(server.getLocalPort())).join());
+            assertEquals(1, inspector.getCacheSize());
+            assertEquals(1, connections.get());
+        }
+    }
+
+    @Test
+    public void test_concurrent() {
+        try (TlsInspector inspector = new TlsInspector().setMaxConcurrent(4).setCache(0, 0)) {
+            final List<CompletableFuture<TlsInfo>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(inspector.inspect(target(server.getLocalPort())));
+            }
+            for (CompletableFuture<TlsInfo> future : futures) {
+                assertEquals("CN=jports.test,O=jports", future.join().getSubject());
+            }
+        }
+    }
+
+    @Test
+    public void test_notTls() throws IOException {
+        try (ServerSocket plain = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             TlsInspector inspector = new TlsInspector().setTimeout(300)) {
+            final Thread thread = new Thread(() -> {
+                try (Socket socket = plain.accept()) {
+                    socket.getOutputStream().write("HTTP/1.1 400 Bad Request\r\n\r\n".getBytes());
+                } catch (IOException ignored) {}
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            assertNull(inspector.inspect(target(plain.getLocalPort())).join());
+            // Accepted by the backlog but never answered, ends with the timeout.
+            assertNull(inspector.inspect(target(silent.getLocalPort())).join());
+            assertEquals(2, inspector.getCacheSize());
+        }
+    }
+
+    @Test
+    public void test_scanTlsInfo() throws Exception {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+
+        try (TlsInspector inspector = new TlsInspector();
+             ServerSocket plain = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                    .setPorts(Arrays.asList(server.getLocalPort(), plain.getLocalPort()))
+                    .setTlsInspector(inspector, Collections.singletonList(server.getLocalPort()))
+                    .setConsumingMethod(results::add)
+                    .executeAndAwait();
+        }
+
+        assertEquals(2, results.size());
+        for (IPv4AddressPort result : results) {
+            if (result.getPort() == server.getLocalPort()) {
+                assertEquals("CN=jports.test,O=jports", result.getTlsInfo().getSubject());
+            } else {
+                assertNull(result.getTlsInfo());
+            }
+        }
+    }
+
+}
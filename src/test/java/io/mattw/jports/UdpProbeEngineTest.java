@@ -0,0 +1,88 @@
+package io.mattw.jports;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class UdpProbeEngineTest {
+
+    private DatagramSocket responder;
+    private DatagramSocket silent;
+    private Thread responderThread;
+    private volatile byte[] received;
+
+    @Before
+    public void setup() throws IOException {
+        responder = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+
+        responderThread = new Thread(() -> {
+            final byte[] buffer = new byte[1024];
+            try {
+                while (true) {
+                    final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    responder.receive(packet);
+                    received = Arrays.copyOf(packet.getData(), packet.getLength());
+                    responder.send(new DatagramPacket(new byte[]{1}, 1, packet.getSocketAddress()));
+                }
+            } catch (IOException ignored) {}
+        });
+        responderThread.start();
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        responder.close();
+        silent.close();
+        responderThread.join();
+    }
+
+    @Test
+    public void testUdp_openAndSilent() throws InterruptedException {
+        final byte[] payload = {0x0a, 0x0b};
+        final Map<Integer, byte[]> payloads = new HashMap<>();
+        payloads.put(responder.getLocalPort(), payload);
+
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        new IPv4BlockPortScan("127.0.0.1", ScanMethod.SINGLE_ADDRESS)
+                .setPorts(Arrays.asList(responder.getLocalPort(), silent.getLocalPort()))
+                .setProtocol(Protocol.UDP)
+                .setUdpPayloads(payloads)
+                .setCheckTimeout(200)
+                .setConsumeAllStatuses(true)
+                .setConsumingMethod(results::add)
+                .executeAndAwait();
+
+        assertEquals(2, results.size());
+        for (IPv4AddressPort result : results) {
+            final boolean answered = result.getPort() == responder.getLocalPort();
+            assertEquals(answered ? PortStatus.OPEN : PortStatus.FILTERED, result.getStatus());
+        }
+        assertArrayEquals(payload, received);
+    }
+
+    @Test
+    public void testUdp_onlyOpenConsumed() throws InterruptedException {
+        final List<IPv4AddressPort> results = Collections.synchronizedList(new ArrayList<>());
+        new IPv4BlockPortScan(new IPv4AddressBlock("127.0.0.0/29"))
+                .setPorts(Arrays.asList(responder.getLocalPort(), silent.getLocalPort()))
+                .setProtocol(Protocol.UDP)
+                .setThreadCount(4)
+                .setCheckTimeout(200)
+                .setConsumingMethod(results::add)
+                .executeAndAwait();
+
+        assertEquals(1, results.size());
+        assertEquals("127.0.0.1:" + responder.getLocalPort(), results.get(0).getFullAddress());
+    }
+
+}
@@ -0,0 +1,79 @@
+package io.mattw.jports.cli;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JPortsCliTest {
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(final String input, final String... args) throws InterruptedException {
+        return JPortsCli.run(args, new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(out), new PrintStream(err));
+    }
+
+    @Test
+    public void testCli_ndjsonFromStdin() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final int code = run("127.0.0.0/30\n", "-p", String.valueOf(server.getLocalPort()), "-t", "4");
+
+            assertEquals(JPortsCli.EXIT_OK, code);
+            assertEquals("{\"address\":\"127.0.0.1\",\"port\":" + server.getLocalPort() + ",\"status\":\"OPEN\"}\n",
+                    out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testCli_csvAllStatuses() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final int code = run("", "-p", String.valueOf(server.getLocalPort()), "-f", "csv", "-a", "127.0.0.1");
+
+            assertEquals(JPortsCli.EXIT_OK, code);
+            assertEquals("address,port,status\n127.0.0.1," + server.getLocalPort() + ",OPEN\n", out.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testCli_missingPorts() throws Exception {
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "127.0.0.1"));
+        assertTrue(err.toString("UTF-8").contains("usage"));
+    }
+
+    @Test(timeout = 10000)
+    public void testCli_invalidThreads() throws Exception {
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "-p", "80", "-t", "0", "127.0.0.1"));
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "-p", "80", "-t", "-4", "127.0.0.1"));
+        assertTrue(err.toString("UTF-8").contains("usage"));
+        assertEquals("", out.toString("UTF-8"));
+    }
+
+    @Test(timeout = 10000)
+    public void testCli_invalidTimeoutAndRate() throws Exception {
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "-p", "80", "-w", "-5", "127.0.0.1"));
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "-p", "80", "-r", "0", "127.0.0.1"));
+        assertEquals(JPortsCli.EXIT_USAGE, run("", "-p", "80", "-r", "-10", "127.0.0.1"));
+        assertTrue(err.toString("UTF-8").contains("usage"));
+        assertEquals("", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testCli_parsePorts() {
+        assertEquals(Arrays.asList(22, 80, 81, 82), Arrays.asList(JPortsCli.parsePorts("22, 80-82,80").toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCli_parsePortsInvalid() {
+        JPortsCli.parsePorts("70000");
+    }
+
+}